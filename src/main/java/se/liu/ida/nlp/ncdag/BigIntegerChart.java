@@ -9,7 +9,7 @@ import java.math.BigInteger;
  *
  * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
  */
-public class BigIntegerChart {
+public class BigIntegerChart implements Chart {
 
 	private final BigInteger[][] chart;
 
@@ -20,6 +20,11 @@ public class BigIntegerChart {
 		}
 	}
 
+	@Override
+	public int getSize() {
+		return chart.length;
+	}
+
 	public BigInteger get(int min, int max) {
 		BigInteger b = chart[min][max - min];
 		if (b == null) {
@@ -39,4 +44,9 @@ public class BigIntegerChart {
 		}
 		chart[min][max - min] = b.add(value);
 	}
+
+	@Override
+	public BigInteger getBigInteger(int min, int max) {
+		return get(min, max);
+	}
 }
@@ -0,0 +1,465 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A corpus of graphs in a compact binary format. The format is designed to be
+ * loaded quickly: opening a corpus maps the file into memory and reads the
+ * string dictionary and the index, and the graphs themselves are decoded only
+ * when they are accessed.
+ *
+ * <p>
+ * A corpus file consists of a header, the graph records, a dictionary and an
+ * index. All integers in the records and the dictionary are unsigned
+ * variable-length integers with seven bits per byte, least significant group
+ * first. The header holds a magic number, a version, the number of graphs and
+ * the positions of the dictionary and the index. A graph record holds the
+ * numbers of nodes and edges, then for each node the dictionary codes of its
+ * form, lemma and part-of-speech tag together with its TOP and PRED flags,
+ * and for each edge its source, its target and the code of its label. The
+ * dictionary lists all strings, including the graph IDs, as UTF-8 bytes.
+ * The code of a string is its position in the dictionary plus one; the code
+ * 0 stands for an absent ({@code null}) string, as in graphs without
+ * attributes. The index holds, for each graph, the position of its record
+ * and the code of its ID. The records are laid out such that no record crosses a boundary
+ * between two mapped segments of the file.
+ *
+ * <p>
+ * A corpus can be accessed by several threads at the same time.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class BinaryCorpus implements Closeable {
+
+	/**
+	 * The magic number at the start of a corpus file.
+	 */
+	private static final int MAGIC = 0x4e434447;
+
+	private static final int VERSION = 2;
+
+	/**
+	 * The size of the header: magic, version, number of graphs, and the
+	 * positions of the dictionary and the index.
+	 */
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+
+	/**
+	 * The size of a mapped segment of the file.
+	 */
+	private static final int SEGMENT_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+
+	/**
+	 * The mapped segments of the record section.
+	 */
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * The strings of the dictionary, indexed by their codes; the string with
+	 * code 0 is {@code null}.
+	 */
+	private final String[] strings;
+
+	/**
+	 * The positions of the graph records.
+	 */
+	private final long[] offsets;
+
+	/**
+	 * The dictionary codes of the graph IDs.
+	 */
+	private final int[] ids;
+
+	/**
+	 * The indices of the graphs, by graph ID; computed on demand.
+	 */
+	private volatile Map<String, Integer> indices;
+
+	/**
+	 * Opens the corpus in the specified file.
+	 *
+	 * @param fileName the name of the file
+	 * @throws IOException if the file cannot be read or is not a corpus file
+	 */
+	public BinaryCorpus(String fileName) throws IOException {
+		this(Paths.get(fileName));
+	}
+
+	/**
+	 * Opens the corpus in the specified file.
+	 *
+	 * @param path the file
+	 * @throws IOException if the file cannot be read or is not a corpus file
+	 */
+	public BinaryCorpus(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+				// Continue reading.
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+				throw new IOException("Not a corpus file: " + path);
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version: " + version);
+			}
+			int nGraphs = header.getInt();
+			long dictionaryOffset = header.getLong();
+			long indexOffset = header.getLong();
+
+			int nSegments = (int) ((dictionaryOffset - HEADER_SIZE + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			this.segments = new MappedByteBuffer[nSegments];
+			for (int i = 0; i < nSegments; i++) {
+				long start = HEADER_SIZE + (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, dictionaryOffset - start));
+			}
+
+			ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, indexOffset - dictionaryOffset);
+			this.strings = new String[readVarint(dictionary) + 1];
+			byte[] bytes = new byte[64];
+			for (int i = 1; i < strings.length; i++) {
+				int length = readVarint(dictionary);
+				if (bytes.length < length) {
+					bytes = new byte[Math.max(length, 2 * bytes.length)];
+				}
+				dictionary.get(bytes, 0, length);
+				strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			}
+
+			ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) nGraphs * 12);
+			this.offsets = new long[nGraphs];
+			this.ids = new int[nGraphs];
+			for (int i = 0; i < nGraphs; i++) {
+				offsets[i] = index.getLong();
+				ids[i] = index.getInt();
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of graphs in this corpus.
+	 *
+	 * @return the number of graphs in this corpus
+	 */
+	public int getNGraphs() {
+		return offsets.length;
+	}
+
+	/**
+	 * Returns the ID of the graph with the specified index.
+	 *
+	 * @param index the index of the graph
+	 * @return the ID of the graph with the specified index
+	 */
+	public String getId(int index) {
+		return strings[ids[index]];
+	}
+
+	/**
+	 * Returns the index of the graph with the specified ID.
+	 *
+	 * @param id the ID of the graph
+	 * @return the index of the graph with the specified ID, or -1 if there is
+	 * no such graph
+	 */
+	public int indexOf(String id) {
+		Map<String, Integer> indices = this.indices;
+		if (indices == null) {
+			indices = new HashMap<>(2 * ids.length);
+			for (int i = 0; i < ids.length; i++) {
+				indices.put(strings[ids[i]], i);
+			}
+			this.indices = indices;
+		}
+		Integer index = indices.get(id);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Decodes the graph with the specified index.
+	 *
+	 * @param index the index of the graph
+	 * @return the graph with the specified index
+	 */
+	public Graph getGraph(int index) {
+		long offset = offsets[index] - HEADER_SIZE;
+		ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)];
+		int[] position = {(int) (offset % SEGMENT_SIZE)};
+
+		Graph graph = new Graph(strings[ids[index]]);
+		int nNodes = readVarint(segment, position);
+		int nEdges = readVarint(segment, position);
+		for (int node = 0; node < nNodes; node++) {
+			String form = strings[readVarint(segment, position)];
+			String lemma = strings[readVarint(segment, position)];
+			String pos = strings[readVarint(segment, position)];
+			int flags = readVarint(segment, position);
+			graph.addNode(form, lemma, pos, (flags & 1) != 0, (flags & 2) != 0);
+		}
+		for (int edge = 0; edge < nEdges; edge++) {
+			int source = readVarint(segment, position);
+			int target = readVarint(segment, position);
+			graph.addEdge(source, target, strings[readVarint(segment, position)]);
+		}
+		return graph;
+	}
+
+	/**
+	 * Decodes the graph with the specified ID.
+	 *
+	 * @param id the ID of the graph
+	 * @return the graph with the specified ID, or {@code null} if there is no
+	 * such graph
+	 */
+	public Graph getGraph(String id) {
+		int index = indexOf(id);
+		return index < 0 ? null : getGraph(index);
+	}
+
+	/**
+	 * Returns a list view of the graphs in this corpus. The graphs are
+	 * decoded whenever they are accessed; the list supports random access and
+	 * parallel streams.
+	 *
+	 * @return a list view of the graphs in this corpus
+	 */
+	public List<Graph> getGraphs() {
+		return new GraphList();
+	}
+
+	private final class GraphList extends AbstractList<Graph> implements RandomAccess {
+
+		@Override
+		public Graph get(int index) {
+			return getGraph(index);
+		}
+
+		@Override
+		public int size() {
+			return getNGraphs();
+		}
+	}
+
+	/**
+	 * Closes the file. The mapped segments remain valid until they are
+	 * garbage collected.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Writes the specified graphs to the specified file in the format of this
+	 * class.
+	 *
+	 * @param graphs the graphs
+	 * @param path the file
+	 * @return the number of graphs written
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static int write(Iterator<Graph> graphs, Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+			OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+
+			SymbolTable symbols = new SymbolTable();
+			List<Long> offsets = new ArrayList<>();
+			List<Integer> ids = new ArrayList<>();
+			ByteArrayOutputStream record = new ByteArrayOutputStream();
+			long position = HEADER_SIZE;
+			while (graphs.hasNext()) {
+				Graph graph = graphs.next();
+				record.reset();
+				writeVarint(record, graph.getNNodes());
+				writeVarint(record, graph.getNEdges());
+				for (Node node : graph.getNodes()) {
+					writeVarint(record, encode(symbols, node.form));
+					writeVarint(record, encode(symbols, node.lemma));
+					writeVarint(record, encode(symbols, node.pos));
+					writeVarint(record, (node.isTop ? 1 : 0) | (node.isPred ? 2 : 0));
+				}
+				for (Edge edge : graph.getEdges()) {
+					writeVarint(record, edge.source);
+					writeVarint(record, edge.target);
+					writeVarint(record, encode(symbols, edge.label));
+				}
+
+				// Make sure that the record does not cross a segment boundary.
+				if (record.size() > SEGMENT_SIZE) {
+					throw new IOException("Graph too large: " + graph.id);
+				}
+				long segmentEnd = HEADER_SIZE + ((position - HEADER_SIZE) / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+				if (position + record.size() > segmentEnd) {
+					for (; position < segmentEnd; position++) {
+						out.write(0);
+					}
+				}
+
+				offsets.add(position);
+				ids.add(encode(symbols, graph.id));
+				record.writeTo(out);
+				position += record.size();
+			}
+
+			long dictionaryOffset = position;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			writeVarint(bytes, symbols.size());
+			for (int i = 0; i < symbols.size(); i++) {
+				byte[] encoded = symbols.getSymbol(i).getBytes(StandardCharsets.UTF_8);
+				writeVarint(bytes, encoded.length);
+				bytes.write(encoded, 0, encoded.length);
+				if (bytes.size() >= 1 << 16) {
+					position += bytes.size();
+					bytes.writeTo(out);
+					bytes.reset();
+				}
+			}
+			position += bytes.size();
+			bytes.writeTo(out);
+
+			long indexOffset = position;
+			ByteBuffer entry = ByteBuffer.allocate(12);
+			for (int i = 0; i < offsets.size(); i++) {
+				entry.clear();
+				entry.putLong(offsets.get(i));
+				entry.putInt(ids.get(i));
+				out.write(entry.array());
+			}
+			out.flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(offsets.size());
+			header.putLong(dictionaryOffset);
+			header.putLong(indexOffset);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+			return offsets.size();
+		}
+	}
+
+	/**
+	 * Returns the dictionary code of the specified string, adding the string
+	 * to the specified table if necessary.
+	 */
+	private static int encode(SymbolTable symbols, String string) {
+		return string == null ? 0 : symbols.add(string) + 1;
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarint(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Reads a variable-length integer at the specified position of the
+	 * specified buffer, without changing the position of the buffer.
+	 */
+	private static int readVarint(ByteBuffer buffer, int[] position) {
+		int p = position[0];
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = buffer.get(p++);
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				position[0] = p;
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Converts a file in the text format read by {@link GraphReader} to the
+	 * binary format.
+	 *
+	 * <p>
+	 * Usage: {@code BinaryCorpus input output}
+	 *
+	 * @param args the names of the input file and the output file
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static void main(String[] args) throws IOException {
+		long start = System.nanoTime();
+		int nGraphs;
+		try (MappedGraphReader reader = new MappedGraphReader(args[0])) {
+			Iterator<Graph> graphs = new Iterator<Graph>() {
+
+				private Graph next = readGraph();
+
+				private Graph readGraph() {
+					try {
+						return reader.readGraph();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public Graph next() {
+					Graph graph = next;
+					next = readGraph();
+					return graph;
+				}
+			};
+			nGraphs = write(graphs, Paths.get(args[1]));
+		}
+		System.err.format("Wrote %d graphs in %.1f s%n", nGraphs, (System.nanoTime() - start) / 1e9);
+		System.exit(0);
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.math.BigInteger;
+
+/**
+ * A chart that stores a number for each span {@code (min, max)} of a sequence
+ * of nodes, where {@code min <= max}.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public interface Chart {
+
+	/**
+	 * Returns the number of nodes of this chart.
+	 *
+	 * @return the number of nodes of this chart
+	 */
+	public int getSize();
+
+	/**
+	 * Returns the number stored for the specified span, as an exact integer.
+	 *
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return the number stored for the specified span
+	 */
+	public BigInteger getBigInteger(int min, int max);
+}
@@ -0,0 +1,126 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.Arrays;
+
+/**
+ * Measure the effect of the chart layout on the binary rules. For every span
+ * {@code (min, max)} and every split point {@code mid}, the binary rules read
+ * one cell on the span {@code (min, mid)} and one cell on the span
+ * {@code (mid, max)}. When both cells are read from the rows of the chart,
+ * the second read jumps to a different row for every split point; when the
+ * second cell is read from the copy of the chart that is ordered by right
+ * endpoint, both reads walk through contiguous memory. The benchmark runs the
+ * loop over the split points in both ways, and also reports the time taken
+ * by a complete max-plus tabulation of {@link Grammar#COUNTING}.
+ *
+ * <p>
+ * Usage: {@code ChartBenchmark [nNodes [nRounds]]}, by default 100 nodes and
+ * 20 rounds. The reported times are the best of all rounds.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class ChartBenchmark {
+
+	private final int nNodes;
+
+	private final int depth;
+
+	private final IntChart chart;
+
+	private ChartBenchmark(int nNodes, int depth) {
+		this.nNodes = nNodes;
+		this.depth = depth;
+		int[] reach = new int[nNodes];
+		Arrays.fill(reach, nNodes - 1);
+		this.chart = new IntChart(nNodes, reach, new int[nNodes], depth);
+		for (int max = 0; max < nNodes; max++) {
+			for (int min = 0; min <= max; min++) {
+				for (int index = 0; index < depth; index++) {
+					chart.set(min, max, index, min + max + index);
+				}
+				chart.copyToColumn(min, max);
+			}
+		}
+	}
+
+	/**
+	 * Reads the antecedents on the span {@code (mid, max)} from the rows of
+	 * the chart.
+	 */
+	private long sumRows() {
+		long result = 0L;
+		for (int length = 2; length < nNodes; length++) {
+			for (int min = 0, max = length; max < nNodes; min++, max++) {
+				int[] row = chart.getRow(min);
+				for (int mid = min + 1; mid < max; mid++) {
+					int[] row2 = chart.getRow(mid);
+					int cell1 = (mid - min) * depth;
+					int cell2 = (max - mid) * depth;
+					for (int index = 0; index < depth; index++) {
+						result += row[cell1 + index] * row2[cell2 + index];
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the antecedents on the span {@code (mid, max)} from the column of
+	 * {@code max}.
+	 */
+	private long sumColumns() {
+		long result = 0L;
+		for (int length = 2; length < nNodes; length++) {
+			for (int min = 0, max = length; max < nNodes; min++, max++) {
+				int[] row = chart.getRow(min);
+				int[] column = chart.getColumn(max);
+				for (int mid = min + 1; mid < max; mid++) {
+					int cell1 = (mid - min) * depth;
+					int cell2 = (max - mid) * depth;
+					for (int index = 0; index < depth; index++) {
+						result += row[cell1 + index] * column[cell2 + index];
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private static long time(Runnable runnable) {
+		long start = System.nanoTime();
+		runnable.run();
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) {
+		int nNodes = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int nRounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		Grammar grammar = Grammar.COUNTING;
+
+		ChartBenchmark benchmark = new ChartBenchmark(nNodes, grammar.getNTypes());
+		IntTabulation tabulation = new IntTabulation(grammar, Semiring.OfInt.MAX_PLUS, null);
+		long[] checksums = new long[2];
+		long bestRows = Long.MAX_VALUE;
+		long bestColumns = Long.MAX_VALUE;
+		long bestTabulation = Long.MAX_VALUE;
+		for (int round = 0; round < nRounds; round++) {
+			bestRows = Math.min(bestRows, time(() -> checksums[0] = benchmark.sumRows()));
+			bestColumns = Math.min(bestColumns, time(() -> checksums[1] = benchmark.sumColumns()));
+			bestTabulation = Math.min(bestTabulation, time(() -> tabulation.fill(nNodes)));
+		}
+		if (checksums[0] != checksums[1]) {
+			throw new IllegalStateException("Checksums differ: " + checksums[0] + " != " + checksums[1]);
+		}
+
+		long nSplits = (long) (nNodes - 2) * (nNodes - 1) * nNodes / 6;
+		System.out.format("nodes: %d, item types: %d, split points: %d%n", nNodes, grammar.getNTypes(), nSplits);
+		System.out.format("rows and rows:    %8.3f ms (%.2f ns per split point)%n", bestRows / 1e6, (double) bestRows / nSplits);
+		System.out.format("rows and columns: %8.3f ms (%.2f ns per split point)%n", bestColumns / 1e6, (double) bestColumns / nSplits);
+		System.out.format("tabulation:       %8.3f ms%n", bestTabulation / 1e6);
+		System.exit(0);
+	}
+}
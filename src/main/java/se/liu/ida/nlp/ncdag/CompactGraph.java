@@ -0,0 +1,503 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.Arrays;
+
+/**
+ * The structure of a semantic dependency graph: the number of nodes, the TOP
+ * and PRED flags of the nodes, and the endpoints of the edges. Unlike a
+ * {@link Graph}, a compact graph represents nodes and edges by their IDs
+ * rather than by objects. Compact graphs are immutable.
+ *
+ * <p>
+ * Besides the endpoints of the edges by edge ID, a compact graph holds the
+ * edges in compressed sparse row format for both directions: for each node,
+ * the targets of its outgoing edges and the sources of its incoming edges are
+ * stored contiguously in a single array, so that traversals do not need to
+ * follow pointers.
+ *
+ * <p>
+ * A compact graph may also hold the forms, lemmas and part-of-speech tags of
+ * its nodes and the labels of its edges, as IDs in a {@link SymbolTable}. The
+ * strings are looked up in the table on demand. Graphs without these
+ * attributes return {@code null} for the strings and -1 for the IDs.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class CompactGraph {
+
+	/**
+	 * The flag for top nodes.
+	 */
+	static final byte TOP = 1;
+
+	/**
+	 * The flag for predicates.
+	 */
+	static final byte PRED = 2;
+
+	/**
+	 * The unique ID of this graph.
+	 */
+	public final String id;
+
+	/**
+	 * The TOP and PRED flags of the nodes, indexed by node ID.
+	 */
+	private final byte[] flags;
+
+	/**
+	 * The source nodes of the edges, indexed by edge ID.
+	 */
+	private final int[] sources;
+
+	/**
+	 * The target nodes of the edges, indexed by edge ID.
+	 */
+	private final int[] targets;
+
+	/**
+	 * The table of the attributes, or {@code null} if this graph has no
+	 * attributes.
+	 */
+	private final SymbolTable symbols;
+
+	/**
+	 * The IDs of the forms, lemmas and part-of-speech tags of the nodes,
+	 * three values per node, or {@code null}.
+	 */
+	private final int[] attributes;
+
+	/**
+	 * The IDs of the labels of the edges, indexed by edge ID, or
+	 * {@code null}.
+	 */
+	private final int[] labels;
+
+	/**
+	 * The positions in {@link #outNeighbors} at which the outgoing edges of
+	 * each node start, indexed by node ID, followed by the number of edges.
+	 */
+	private final int[] outOffsets;
+
+	/**
+	 * The targets of the outgoing edges, grouped by source.
+	 */
+	private final int[] outNeighbors;
+
+	/**
+	 * The IDs of the labels of the outgoing edges, in the order of
+	 * {@link #outNeighbors}, or {@code null}.
+	 */
+	private final int[] outLabels;
+
+	/**
+	 * The positions in {@link #inNeighbors} at which the incoming edges of
+	 * each node start, indexed by node ID, followed by the number of edges.
+	 */
+	private final int[] inOffsets;
+
+	/**
+	 * The sources of the incoming edges, grouped by target.
+	 */
+	private final int[] inNeighbors;
+
+	/**
+	 * The IDs of the labels of the incoming edges, in the order of
+	 * {@link #inNeighbors}, or {@code null}.
+	 */
+	private final int[] inLabels;
+
+	/**
+	 * Construct a compact graph without attributes. The arrays are used
+	 * directly, not copied.
+	 *
+	 * @param id the unique ID of the new graph
+	 * @param flags the TOP and PRED flags of the nodes
+	 * @param sources the source nodes of the edges
+	 * @param targets the target nodes of the edges
+	 */
+	CompactGraph(String id, byte[] flags, int[] sources, int[] targets) {
+		this(id, flags, sources, targets, null, null, null);
+	}
+
+	/**
+	 * Construct a compact graph. The arrays are used directly, not copied.
+	 *
+	 * @param id the unique ID of the new graph
+	 * @param flags the TOP and PRED flags of the nodes
+	 * @param sources the source nodes of the edges
+	 * @param targets the target nodes of the edges
+	 * @param symbols the table of the attributes, or {@code null}
+	 * @param attributes the IDs of the forms, lemmas and part-of-speech tags
+	 * of the nodes, or {@code null}
+	 * @param labels the IDs of the labels of the edges, or {@code null}
+	 */
+	CompactGraph(String id, byte[] flags, int[] sources, int[] targets, SymbolTable symbols, int[] attributes, int[] labels) {
+		assert sources.length == targets.length;
+		assert symbols == null || attributes.length == 3 * flags.length && labels.length == sources.length;
+		this.id = id;
+		this.flags = flags;
+		this.sources = sources;
+		this.targets = targets;
+		this.symbols = symbols;
+		this.attributes = attributes;
+		this.labels = labels;
+
+		int nNodes = flags.length;
+		this.outOffsets = new int[nNodes + 1];
+		int[] outEdges = sortEdges(sources, outOffsets);
+		this.outNeighbors = permute(targets, outEdges);
+		this.outLabels = permute(labels, outEdges);
+		this.inOffsets = new int[nNodes + 1];
+		int[] inEdges = sortEdges(targets, inOffsets);
+		this.inNeighbors = permute(sources, inEdges);
+		this.inLabels = permute(labels, inEdges);
+	}
+
+	/**
+	 * Construct the compact graph for the specified graph, without
+	 * attributes.
+	 *
+	 * @param graph the graph
+	 */
+	public CompactGraph(Graph graph) {
+		this(graph, null);
+	}
+
+	/**
+	 * Construct the compact graph for the specified graph. If a table is
+	 * specified, the attributes of the graph are added to it.
+	 *
+	 * @param graph the graph
+	 * @param symbols the table for the attributes, or {@code null} if the
+	 * compact graph should not hold attributes
+	 */
+	public CompactGraph(Graph graph, SymbolTable symbols) {
+		this(graph.id, getFlags(graph), getSources(graph), getTargets(graph), symbols, getAttributes(graph, symbols), getLabels(graph, symbols));
+	}
+
+	private static byte[] getFlags(Graph graph) {
+		byte[] flags = new byte[graph.getNNodes()];
+		for (Node node : graph.getNodes()) {
+			flags[node.id] = (byte) ((node.isTop ? TOP : 0) | (node.isPred ? PRED : 0));
+		}
+		return flags;
+	}
+
+	private static int[] getSources(Graph graph) {
+		int[] sources = new int[graph.getNEdges()];
+		for (Edge edge : graph.getEdges()) {
+			sources[edge.id] = edge.source;
+		}
+		return sources;
+	}
+
+	private static int[] getTargets(Graph graph) {
+		int[] targets = new int[graph.getNEdges()];
+		for (Edge edge : graph.getEdges()) {
+			targets[edge.id] = edge.target;
+		}
+		return targets;
+	}
+
+	private static int[] getAttributes(Graph graph, SymbolTable symbols) {
+		if (symbols == null) {
+			return null;
+		}
+		int[] attributes = new int[3 * graph.getNNodes()];
+		for (Node node : graph.getNodes()) {
+			attributes[3 * node.id] = add(symbols, node.form);
+			attributes[3 * node.id + 1] = add(symbols, node.lemma);
+			attributes[3 * node.id + 2] = add(symbols, node.pos);
+		}
+		return attributes;
+	}
+
+	private static int[] getLabels(Graph graph, SymbolTable symbols) {
+		if (symbols == null) {
+			return null;
+		}
+		int[] labels = new int[graph.getNEdges()];
+		for (Edge edge : graph.getEdges()) {
+			labels[edge.id] = add(symbols, edge.label);
+		}
+		return labels;
+	}
+
+	/**
+	 * Returns the ID of the specified symbol, adding it to the specified
+	 * table if necessary, or -1 if the symbol is {@code null}.
+	 */
+	private static int add(SymbolTable symbols, String symbol) {
+		return symbol == null ? -1 : symbols.add(symbol);
+	}
+
+	/**
+	 * Sorts the edges by the specified endpoint, keeping the order of the
+	 * edges with the same endpoint. This fills in the offsets of the nodes
+	 * and returns the IDs of the edges in the sorted order.
+	 *
+	 * @param endpoints the endpoints by which to sort, indexed by edge ID
+	 * @param offsets the array for the offsets, of size one more than the
+	 * number of nodes
+	 * @return the IDs of the edges in the sorted order
+	 */
+	private static int[] sortEdges(int[] endpoints, int[] offsets) {
+		for (int endpoint : endpoints) {
+			offsets[endpoint + 1]++;
+		}
+		for (int node = 1; node < offsets.length; node++) {
+			offsets[node] += offsets[node - 1];
+		}
+		int[] edges = new int[endpoints.length];
+		int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+		for (int edge = 0; edge < endpoints.length; edge++) {
+			edges[next[endpoints[edge]]++] = edge;
+		}
+		return edges;
+	}
+
+	/**
+	 * Returns the values of the specified array for the specified edges.
+	 */
+	private static int[] permute(int[] values, int[] edges) {
+		if (values == null) {
+			return null;
+		}
+		int[] result = new int[edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			result[i] = values[edges[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of nodes of this graph.
+	 *
+	 * @return the number of nodes of this graph
+	 */
+	public int getNNodes() {
+		return flags.length;
+	}
+
+	/**
+	 * Returns the number of edges of this graph.
+	 *
+	 * @return the number of edges of this graph
+	 */
+	public int getNEdges() {
+		return sources.length;
+	}
+
+	/**
+	 * Tests whether the specified node is a top node.
+	 *
+	 * @param node the ID of the node
+	 * @return {@code true} if the specified node is a top node
+	 */
+	public boolean isTop(int node) {
+		return (flags[node] & TOP) != 0;
+	}
+
+	/**
+	 * Tests whether the specified node is a predicate.
+	 *
+	 * @param node the ID of the node
+	 * @return {@code true} if the specified node is a predicate
+	 */
+	public boolean isPred(int node) {
+		return (flags[node] & PRED) != 0;
+	}
+
+	/**
+	 * Returns the source node of the specified edge.
+	 *
+	 * @param edge the ID of the edge
+	 * @return the ID of the source node of the specified edge
+	 */
+	public int getSource(int edge) {
+		return sources[edge];
+	}
+
+	/**
+	 * Returns the target node of the specified edge.
+	 *
+	 * @param edge the ID of the edge
+	 * @return the ID of the target node of the specified edge
+	 */
+	public int getTarget(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * Returns the number of outgoing edges of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @return the number of outgoing edges of the specified node
+	 */
+	public int getOutdegree(int node) {
+		return outOffsets[node + 1] - outOffsets[node];
+	}
+
+	/**
+	 * Returns the target of an outgoing edge of the specified node. The
+	 * outgoing edges of a node are ordered by edge ID.
+	 *
+	 * @param node the ID of the node
+	 * @param i the index of the edge among the outgoing edges of the node
+	 * @return the ID of the target node of the edge
+	 */
+	public int getSuccessor(int node, int i) {
+		assert 0 <= i && i < getOutdegree(node);
+		return outNeighbors[outOffsets[node] + i];
+	}
+
+	/**
+	 * Returns the ID of the label of an outgoing edge of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @param i the index of the edge among the outgoing edges of the node
+	 * @return the ID of the label of the edge, or -1
+	 */
+	public int getOutgoingLabelId(int node, int i) {
+		assert 0 <= i && i < getOutdegree(node);
+		return outLabels == null ? -1 : outLabels[outOffsets[node] + i];
+	}
+
+	/**
+	 * Returns the number of incoming edges of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @return the number of incoming edges of the specified node
+	 */
+	public int getIndegree(int node) {
+		return inOffsets[node + 1] - inOffsets[node];
+	}
+
+	/**
+	 * Returns the source of an incoming edge of the specified node. The
+	 * incoming edges of a node are ordered by edge ID.
+	 *
+	 * @param node the ID of the node
+	 * @param i the index of the edge among the incoming edges of the node
+	 * @return the ID of the source node of the edge
+	 */
+	public int getPredecessor(int node, int i) {
+		assert 0 <= i && i < getIndegree(node);
+		return inNeighbors[inOffsets[node] + i];
+	}
+
+	/**
+	 * Returns the ID of the label of an incoming edge of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @param i the index of the edge among the incoming edges of the node
+	 * @return the ID of the label of the edge, or -1
+	 */
+	public int getIncomingLabelId(int node, int i) {
+		assert 0 <= i && i < getIndegree(node);
+		return inLabels == null ? -1 : inLabels[inOffsets[node] + i];
+	}
+
+	/**
+	 * Tests whether this graph holds the attributes of its nodes and edges.
+	 *
+	 * @return {@code true} if this graph holds the attributes of its nodes
+	 * and edges
+	 */
+	public boolean hasAttributes() {
+		return symbols != null;
+	}
+
+	/**
+	 * Returns the table of the attributes of this graph.
+	 *
+	 * @return the table of the attributes of this graph, or {@code null} if
+	 * this graph has no attributes
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+
+	/**
+	 * Returns the ID of the word form of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @return the ID of the word form of the specified node, or -1
+	 */
+	public int getFormId(int node) {
+		return attributes == null ? -1 : attributes[3 * node];
+	}
+
+	/**
+	 * Returns the ID of the lemma of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @return the ID of the lemma of the specified node, or -1
+	 */
+	public int getLemmaId(int node) {
+		return attributes == null ? -1 : attributes[3 * node + 1];
+	}
+
+	/**
+	 * Returns the ID of the part-of-speech tag of the specified node.
+	 *
+	 * @param node the ID of the node
+	 * @return the ID of the part-of-speech tag of the specified node, or -1
+	 */
+	public int getPosId(int node) {
+		return attributes == null ? -1 : attributes[3 * node + 2];
+	}
+
+	/**
+	 * Returns the ID of the label of the specified edge.
+	 *
+	 * @param edge the ID of the edge
+	 * @return the ID of the label of the specified edge, or -1
+	 */
+	public int getLabelId(int edge) {
+		return labels == null ? -1 : labels[edge];
+	}
+
+	public String getForm(int node) {
+		return getSymbol(getFormId(node));
+	}
+
+	public String getLemma(int node) {
+		return getSymbol(getLemmaId(node));
+	}
+
+	public String getPos(int node) {
+		return getSymbol(getPosId(node));
+	}
+
+	public String getLabel(int edge) {
+		return getSymbol(getLabelId(edge));
+	}
+
+	private String getSymbol(int id) {
+		return id < 0 ? null : symbols.getSymbol(id);
+	}
+
+	/**
+	 * Returns a graph with the structure and the attributes of this graph.
+	 * If this graph has no attributes, the forms, lemmas and part-of-speech
+	 * tags of the nodes and the labels of the edges of the returned graph are
+	 * {@code null}.
+	 *
+	 * @return a graph with the structure and the attributes of this graph
+	 */
+	public Graph toGraph() {
+		Graph graph = new Graph(id);
+		for (int node = 0; node < flags.length; node++) {
+			graph.addNode(getForm(node), getLemma(node), getPos(node), isTop(node), isPred(node));
+		}
+		for (int edge = 0; edge < sources.length; edge++) {
+			graph.addEdge(sources[edge], targets[edge], getLabel(edge));
+		}
+		return graph;
+	}
+}
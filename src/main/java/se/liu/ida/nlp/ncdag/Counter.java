@@ -3,7 +3,14 @@
  */
 package se.liu.ida.nlp.ncdag;
 
+import java.io.PrintStream;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Count the number of noncrossing acyclic digraphs.
@@ -39,211 +46,229 @@ public class Counter {
     }
 
     public BigInteger getNDerivations(int nNodes) {
-	BigIntegerChart nMinMaxEdge = new BigIntegerChart(nNodes);
-	BigIntegerChart nMaxMinEdge = new BigIntegerChart(nNodes);
-	BigIntegerChart nMinMaxPath = new BigIntegerChart(nNodes);
-	BigIntegerChart nMaxMinPath = new BigIntegerChart(nNodes);
-	BigIntegerChart nMixConnected = new BigIntegerChart(nNodes);
-	BigIntegerChart nNonConnected = new BigIntegerChart(nNodes);
-
-	for (int node = 0; node < nNodes; node++) {
-	    nMixConnected.set(node, node, BigInteger.ONE);
-	}
+	return getNDerivations(nNodes, Wavefront.SERIAL);
+    }
 
-	for (int max = 0; max < nNodes; max++) {
-	    for (int min = max - 1; min >= 0; min--) {
-		// Rule 01
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMinMaxEdge.get(min, mid);
-		    BigInteger nDerivations2 = nMinMaxEdge.get(mid, max);
-		    update(nMinMaxPath, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 02
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMinMaxEdge.get(min, mid);
-		    BigInteger nDerivations2 = nMaxMinEdge.get(mid, max);
-		    update(nMixConnected, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 03
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMaxMinEdge.get(min, mid);
-		    BigInteger nDerivations2 = nMinMaxEdge.get(mid, max);
-		    update(nMixConnected, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 04
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMaxMinEdge.get(min, mid);
-		    BigInteger nDerivations2 = nMaxMinEdge.get(mid, max);
-		    update(nMaxMinPath, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 05
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMinMaxPath.get(min, mid);
-		    BigInteger nDerivations2 = nMinMaxEdge.get(mid, max);
-		    update(nMinMaxPath, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 06
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMinMaxPath.get(min, mid);
-		    BigInteger nDerivations2 = nMaxMinEdge.get(mid, max);
-		    update(nMixConnected, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 07
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMaxMinPath.get(min, mid);
-		    BigInteger nDerivations2 = nMinMaxEdge.get(mid, max);
-		    update(nMixConnected, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 08
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMaxMinPath.get(min, mid);
-		    BigInteger nDerivations2 = nMaxMinEdge.get(mid, max);
-		    update(nMaxMinPath, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 09
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMixConnected.get(min, mid);
-		    BigInteger nDerivations2 = nMinMaxEdge.get(mid, max);
-		    update(nMixConnected, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 09a
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nNonConnected.get(min, mid);
-		    BigInteger nDerivations2 = nMinMaxEdge.get(mid, max);
-		    update(nNonConnected, min, max, nDerivations1, nDerivations2);
-		}
-		
-		// Rule 10
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nMixConnected.get(min, mid);
-		    BigInteger nDerivations2 = nMaxMinEdge.get(mid, max);
-		    update(nMixConnected, min, max, nDerivations1, nDerivations2);
-		}
-
-		// Rule 10a
-		for (int mid = min + 1; mid < max; mid++) {
-		    BigInteger nDerivations1 = nNonConnected.get(min, mid);
-		    BigInteger nDerivations2 = nMaxMinEdge.get(mid, max);
-		    update(nNonConnected, min, max, nDerivations1, nDerivations2);
-		}
-		
-		// Rule 11
-		{
-		    BigInteger nDerivations = nMinMaxEdge.get(min, max - 1);
-		    update(nNonConnected, min, max, nDerivations);
-		}
-
-		// Rule 12
-		{
-		    BigInteger nDerivations = nMaxMinEdge.get(min, max - 1);
-		    update(nNonConnected, min, max, nDerivations);
-		}
-
-		// Rule 13
-		{
-		    BigInteger nDerivations = nMinMaxPath.get(min, max - 1);
-		    update(nNonConnected, min, max, nDerivations);
-		}
-
-		// Rule 14
-		{
-		    BigInteger nDerivations = nMaxMinPath.get(min, max - 1);
-		    update(nNonConnected, min, max, nDerivations);
-		}
-
-		// Rule 15
-		{
-		    BigInteger nDerivations = nMixConnected.get(min, max - 1);
-		    update(nNonConnected, min, max, nDerivations);
-		}
-
-		// Rule 15a
-		{
-		    BigInteger nDerivations = nNonConnected.get(min, max - 1);
-		    update(nNonConnected, min, max, nDerivations);
-		}
-		
-		// Rule 16
-		{
-		    // Adds the edge min -> max
-		    BigInteger nDerivations = nMinMaxPath.get(min, max);
-		    update(nMinMaxEdge, min, max, nDerivations);
-		}
-
-		// Rule 17
-		{
-		    // Adds the edge max -> min
-		    BigInteger nDerivations = nMaxMinPath.get(min, max);
-		    update(nMaxMinEdge, min, max, nDerivations);
-		}
-
-		// Rule 18
-		{
-		    // Adds the edge min -> max
-		    BigInteger nDerivations = nMixConnected.get(min, max);
-		    update(nMinMaxEdge, min, max, nDerivations);
-		}
-
-		// Rule 18a
-		{
-		    // Adds the edge min -> max
-		    BigInteger nDerivations = nNonConnected.get(min, max);
-		    update(nMinMaxEdge, min, max, nDerivations);
-		}
-		
-		// Rule 19
-		{
-		    // Adds the edge max -> min
-		    BigInteger nDerivations = nMixConnected.get(min, max);
-		    update(nMaxMinEdge, min, max, nDerivations);
-		}
-		
-		// Rule 19a
-		{
-		    // Adds the edge max -> min
-		    BigInteger nDerivations = nNonConnected.get(min, max);
-		    update(nMaxMinEdge, min, max, nDerivations);
-		}
-	    }
-	}
+    /**
+     * Count the number of noncrossing acyclic digraphs, computing the chart
+     * cells according to the specified schedule.
+     *
+     * @param nNodes the number of nodes
+     * @param wavefront the schedule for the computation of the chart cells
+     * @return the number of noncrossing acyclic digraphs with the specified
+     * number of nodes
+     */
+    public BigInteger getNDerivations(int nNodes, Wavefront wavefront) {
+	HybridTabulation tabulation = new HybridTabulation(Grammar.COUNTING);
+	tabulation.fill(nNodes, wavefront);
+	return tabulation.getGoal();
+    }
 
-	BigInteger result = BigInteger.ZERO;
-	result = result.add(nMinMaxEdge.get(0, nNodes - 1));
-	result = result.add(nMaxMinEdge.get(0, nNodes - 1));
-	result = result.add(nMinMaxPath.get(0, nNodes - 1));
-	result = result.add(nMaxMinPath.get(0, nNodes - 1));
-	result = result.add(nMixConnected.get(0, nNodes - 1));
-	result = result.add(nNonConnected.get(0, nNodes - 1));
+    /**
+     * Count the number of noncrossing acyclic digraphs whose arcs have at most
+     * the specified length. The length of an arc is the absolute difference
+     * between the numbers of its endpoints. The charts are stored as bands, so
+     * that the count takes time proportional to
+     * <em>n</em>&middot;<em>L</em><sup>2</sup> and space proportional to
+     * <em>n</em>&middot;<em>L</em>, where <em>L</em> is the maximal length.
+     *
+     * @param nNodes the number of nodes
+     * @param maxArcLength the maximal length of an arc
+     * @return the number of noncrossing acyclic digraphs with the specified
+     * number of nodes whose arcs have at most the specified length
+     */
+    public BigInteger getNDerivations(int nNodes, int maxArcLength) {
+	HybridTabulation tabulation = new HybridTabulation(Grammar.COUNTING);
+	tabulation.setMaxArcLength(maxArcLength);
+	tabulation.fill(nNodes);
+	return tabulation.getGoal();
+    }
+
+    /**
+     * Count the number of noncrossing acyclic digraphs using charts indexed by
+     * span length only.
+     *
+     * <p>
+     * The number of derivations of an item on the span {@code (min, max)} only
+     * depends on the length {@code max - min} of the span, not on its position.
+     * This method therefore keeps one value per item type and span length,
+     * which takes linear space and a quadratic number of multiplications,
+     * rather than the cubic number needed by {@link #getNDerivations(int)}.
+     * The result is the same.
+     *
+     * @param nNodes the number of nodes
+     * @return the number of noncrossing acyclic digraphs with the specified
+     * number of nodes
+     */
+    public BigInteger getNDerivationsByLength(int nNodes) {
+	Terms terms = new Terms();
+	BigInteger result = terms.next();
+	for (int i = 1; i < nNodes; i++) {
+	    result = terms.next();
+	}
 	return result;
     }
 
-    private static void update(BigIntegerChart chart, int min, int max, BigInteger nDerivations1) {
-	chart.add(min, max, nDerivations1);
+    /**
+     * Returns the sequence of the numbers of noncrossing acyclic digraphs with
+     * 1, 2, 3, &hellip; nodes. The charts are filled only once; the number for
+     * <em>n</em> nodes is emitted as soon as all spans of length
+     * <em>n</em>&nbsp;-&nbsp;1 are complete. The returned stream is infinite.
+     *
+     * @return the sequence of the numbers of noncrossing acyclic digraphs
+     */
+    public Stream<BigInteger> getSequence() {
+	Spliterator<BigInteger> spliterator = Spliterators.spliteratorUnknownSize(new Terms(), Spliterator.ORDERED | Spliterator.NONNULL);
+	return StreamSupport.stream(spliterator, false);
     }
 
-    private static void update(BigIntegerChart chart, int min, int max, BigInteger nDerivations1, BigInteger nDerivations2) {
-	chart.add(min, max, nDerivations1.multiply(nDerivations2));
+    /**
+     * Writes the first terms of the sequence in the format of an OEIS b-file.
+     * Each line holds the number of nodes and the number of noncrossing
+     * acyclic digraphs with that many nodes, separated by a space. The output
+     * is flushed after every line.
+     *
+     * @param nTerms the number of terms to write
+     * @param out the stream to write to
+     */
+    public void writeBFile(int nTerms, PrintStream out) {
+	Terms terms = new Terms();
+	for (int n = 1; n <= nTerms; n++) {
+	    out.print(n);
+	    out.print(' ');
+	    out.println(terms.next());
+	    out.flush();
+	}
+    }
+
+    /**
+     * The terms of the sequence, computed from charts indexed by span length.
+     */
+    private static final class Terms implements Iterator<BigInteger> {
+
+	private BigInteger[] nMinMaxEdge = new BigInteger[16];
+	private BigInteger[] nMaxMinEdge = new BigInteger[16];
+	private BigInteger[] nMinMaxPath = new BigInteger[16];
+	private BigInteger[] nMaxMinPath = new BigInteger[16];
+	private BigInteger[] nMixConnected = new BigInteger[16];
+	private BigInteger[] nNonConnected = new BigInteger[16];
+
+	/**
+	 * The length of the spans that will be computed next.
+	 */
+	private int length;
+
+	@Override
+	public boolean hasNext() {
+	    return true;
+	}
+
+	@Override
+	public BigInteger next() {
+	    if (length == nMinMaxEdge.length) {
+		int capacity = 2 * length;
+		nMinMaxEdge = Arrays.copyOf(nMinMaxEdge, capacity);
+		nMaxMinEdge = Arrays.copyOf(nMaxMinEdge, capacity);
+		nMinMaxPath = Arrays.copyOf(nMinMaxPath, capacity);
+		nMaxMinPath = Arrays.copyOf(nMaxMinPath, capacity);
+		nMixConnected = Arrays.copyOf(nMixConnected, capacity);
+		nNonConnected = Arrays.copyOf(nNonConnected, capacity);
+	    }
+	    if (length == 0) {
+		nMinMaxEdge[0] = BigInteger.ZERO;
+		nMaxMinEdge[0] = BigInteger.ZERO;
+		nMinMaxPath[0] = BigInteger.ZERO;
+		nMaxMinPath[0] = BigInteger.ZERO;
+		nMixConnected[0] = BigInteger.ONE;
+		nNonConnected[0] = BigInteger.ZERO;
+	    } else {
+		fill(length);
+	    }
+
+	    BigInteger result = BigInteger.ZERO;
+	    result = result.add(nMinMaxEdge[length]);
+	    result = result.add(nMaxMinEdge[length]);
+	    result = result.add(nMinMaxPath[length]);
+	    result = result.add(nMaxMinPath[length]);
+	    result = result.add(nMixConnected[length]);
+	    result = result.add(nNonConnected[length]);
+	    length++;
+	    return result;
+	}
+
+	private void fill(int length) {
+	    BigInteger nMinMaxPathHere = BigInteger.ZERO;
+	    BigInteger nMaxMinPathHere = BigInteger.ZERO;
+	    BigInteger nMixConnectedHere = BigInteger.ZERO;
+	    BigInteger nNonConnectedHere = BigInteger.ZERO;
+
+	    // The binary rules are grouped by their second antecedent, which
+	    // halves the number of multiplications.
+	    for (int length1 = 1; length1 < length; length1++) {
+		int length2 = length - length1;
+
+		// Rules 01, 05
+		BigInteger nMinMaxOpen = nMinMaxEdge[length1].add(nMinMaxPath[length1]);
+		nMinMaxPathHere = nMinMaxPathHere.add(nMinMaxOpen.multiply(nMinMaxEdge[length2]));
+
+		// Rules 04, 08
+		BigInteger nMaxMinOpen = nMaxMinEdge[length1].add(nMaxMinPath[length1]);
+		nMaxMinPathHere = nMaxMinPathHere.add(nMaxMinOpen.multiply(nMaxMinEdge[length2]));
+
+		// Rules 02, 06, 10
+		BigInteger nMixLeft = nMinMaxOpen.add(nMixConnected[length1]);
+		nMixConnectedHere = nMixConnectedHere.add(nMixLeft.multiply(nMaxMinEdge[length2]));
+
+		// Rules 03, 07, 09
+		BigInteger nMixRight = nMaxMinOpen.add(nMixConnected[length1]);
+		nMixConnectedHere = nMixConnectedHere.add(nMixRight.multiply(nMinMaxEdge[length2]));
+
+		// Rules 09a, 10a
+		BigInteger nEdges2 = nMinMaxEdge[length2].add(nMaxMinEdge[length2]);
+		nNonConnectedHere = nNonConnectedHere.add(nNonConnected[length1].multiply(nEdges2));
+	    }
+
+	    // Rules 11-15a
+	    nNonConnectedHere = nNonConnectedHere.add(nMinMaxEdge[length - 1]);
+	    nNonConnectedHere = nNonConnectedHere.add(nMaxMinEdge[length - 1]);
+	    nNonConnectedHere = nNonConnectedHere.add(nMinMaxPath[length - 1]);
+	    nNonConnectedHere = nNonConnectedHere.add(nMaxMinPath[length - 1]);
+	    nNonConnectedHere = nNonConnectedHere.add(nMixConnected[length - 1]);
+	    nNonConnectedHere = nNonConnectedHere.add(nNonConnected[length - 1]);
+
+	    nMinMaxPath[length] = nMinMaxPathHere;
+	    nMaxMinPath[length] = nMaxMinPathHere;
+	    nMixConnected[length] = nMixConnectedHere;
+	    nNonConnected[length] = nNonConnectedHere;
+
+	    // Rules 16, 18, 18a
+	    nMinMaxEdge[length] = nMinMaxPathHere.add(nMixConnectedHere).add(nNonConnectedHere);
+
+	    // Rules 17, 19, 19a
+	    nMaxMinEdge[length] = nMaxMinPathHere.add(nMixConnectedHere).add(nNonConnectedHere);
+	}
     }
 
     public static void main(String[] args) {
 	Counter counter = Counter.getInstance();
-	int nNodes = Integer.parseInt(args[0]);
-	StringBuilder sb = new StringBuilder();
-	sb.append(counter.getNDerivations(1));
-	for (int i = 2; i <= nNodes; i++) {
-	    sb.append(", ");
-	    sb.append(counter.getNDerivations(i));
+	if (args[0].equals("-b")) {
+	    counter.writeBFile(Integer.parseInt(args[1]), System.out);
+	} else if (args[0].equals("-l")) {
+	    int maxArcLength = Integer.parseInt(args[1]);
+	    int nNodes = Integer.parseInt(args[2]);
+	    System.out.println(counter.getNDerivations(nNodes, maxArcLength));
+	} else {
+	    int nNodes = Integer.parseInt(args[0]);
+	    Iterator<BigInteger> terms = counter.getSequence().limit(nNodes).iterator();
+	    if (terms.hasNext()) {
+		System.out.print(terms.next());
+	    }
+	    while (terms.hasNext()) {
+		System.out.print(", ");
+		System.out.print(terms.next());
+	    }
+	    System.out.println();
 	}
-	System.out.println(sb);
 	System.exit(0);
     }
 }
@@ -5,7 +5,16 @@ package se.liu.ida.nlp.ncdag;
 
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Count the number of noncrossing acyclic digraphs. A <em>noncrossing
@@ -13,293 +22,533 @@ import java.util.Locale;
  * numbered from 1 to <em>n</em> in counter-clockwise order on a circle such
  * that the edges lie entirely within the circle and do not cross each other.
  *
+ * <p>
+ * A counter keeps its charts and other workspace between graphs. The
+ * workspace grows to the largest graph seen so far, so that computing the
+ * coverage of a corpus does not allocate memory per graph once the workspace
+ * is large enough. A counter must not be used by more than one thread at a
+ * time; {@link #getInstance()} returns one counter per thread, and further
+ * counters can be created with the public constructor.
+ *
+ * <p>
+ * Usage: {@code CoverageCounter [-c] [-l maxArcLength] [-t nThreads] file...}.
+ * With {@code -t}, the files are processed by a pipeline of reader and worker
+ * threads; see {@link #getTotals(List, int, int)}. With {@code -c}, the
+ * coverage of every graph is checked against the unpruned
+ * {@link Grammar#COVERAGE}; see {@link #getUnprunedCoverage(CompactGraph, int)}.
+ *
  * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
  */
 public class CoverageCounter {
 
-	private static CoverageCounter instance = null;
-
-	private CoverageCounter() {
-		// Private constructor to prevent instantiation.
+	/**
+	 * The capacity of the queue of graphs in the pipeline, per worker thread.
+	 */
+	private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+
+	/**
+	 * A marker that tells a worker thread of the pipeline to stop.
+	 */
+	private static final CompactGraph END_OF_INPUT = new CompactGraph(null, new byte[0], new int[0], new int[0]);
+
+	private static final ThreadLocal<CoverageCounter> instances = ThreadLocal.withInitial(CoverageCounter::new);
+
+	/**
+	 * The weights of the edges of the current graph, indexed by source and
+	 * target.
+	 */
+	private int[][] weights = new int[0][0];
+
+	/**
+	 * The filter that admits the edges of the current graph.
+	 */
+	private GraphFilter filter;
+
+	/**
+	 * The tabulation, which uses the weights and the filter.
+	 */
+	private IntTabulation tabulation;
+
+	/**
+	 * The tabulation with the unpruned coverage grammar, which uses the
+	 * weights but not the filter; created on demand.
+	 */
+	private IntTabulation unprunedTabulation;
+
+	/**
+	 * Construct a new counter with an empty workspace.
+	 */
+	public CoverageCounter() {
 	}
 
+	/**
+	 * Returns the counter for the current thread.
+	 *
+	 * @return the counter for the current thread
+	 */
 	public static CoverageCounter getInstance() {
-		if (instance == null) {
-			instance = new CoverageCounter();
-		}
-		return instance;
+		return instances.get();
 	}
 
 	public int getCoverage(Graph graph) {
-		GraphFilter filter = new GraphFilter(graph);
+		return getCoverage(graph, Wavefront.SERIAL);
+	}
+
+	/**
+	 * Computes the coverage of the specified graph, computing the chart cells
+	 * according to the specified schedule.
+	 *
+	 * @param graph the graph
+	 * @param wavefront the schedule for the computation of the chart cells
+	 * @return the maximal number of edges of the specified graph that can be
+	 * covered
+	 */
+	public int getCoverage(Graph graph, Wavefront wavefront) {
+		return getCoverage(graph, Integer.MAX_VALUE, wavefront);
+	}
 
+	/**
+	 * Computes the coverage of the specified graph when only edges up to the
+	 * specified length can be covered, computing the chart cells according to
+	 * the specified schedule. The length of an edge is the absolute difference
+	 * between its source and its target.
+	 *
+	 * @param graph the graph
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @param wavefront the schedule for the computation of the chart cells
+	 * @return the maximal number of edges of the specified graph that can be
+	 * covered
+	 */
+	public int getCoverage(Graph graph, int maxArcLength, Wavefront wavefront) {
 		int nNodes = graph.getNNodes();
+		ensureCapacity(nNodes);
+		List<Edge> edges = graph.getEdges();
+		for (int i = 0; i < edges.size(); i++) {
+			setEdge(edges.get(i).source, edges.get(i).target, true);
+		}
+		try {
+			return fill(nNodes, maxArcLength, wavefront);
+		} finally {
+			// Clear the workspace for the next graph.
+			for (int i = 0; i < edges.size(); i++) {
+				setEdge(edges.get(i).source, edges.get(i).target, false);
+			}
+		}
+	}
 
-		IntChart nMinMaxCovered = new IntChart(nNodes);
-		IntChart nMaxMinCovered = new IntChart(nNodes);
-		IntChart nMinMaxConnected = new IntChart(nNodes);
-		IntChart nMaxMinConnected = new IntChart(nNodes);
-		IntChart nMixConnected = new IntChart(nNodes);
-		IntChart nUnconnected = new IntChart(nNodes);
-
-		for (int max = 0; max < nNodes; max++) {
-			for (int min = max - 1; min >= 0; min--) {
-				// Concatenate two edge-covered graphs.
-
-				// Rule 01
-				for (int mid = min + 1; mid < max; mid++) {
-					int nCovered1 = nMinMaxCovered.get(min, mid);
-					int nCovered2 = nMinMaxCovered.get(mid, max);
-					update(nMinMaxConnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * Computes the coverage of the specified graph when only edges up to the
+	 * specified length can be covered, computing the chart cells according to
+	 * the specified schedule.
+	 *
+	 * @param graph the graph
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @param wavefront the schedule for the computation of the chart cells
+	 * @return the maximal number of edges of the specified graph that can be
+	 * covered
+	 * @see #getCoverage(Graph, int, Wavefront)
+	 */
+	public int getCoverage(CompactGraph graph, int maxArcLength, Wavefront wavefront) {
+		int nNodes = graph.getNNodes();
+		ensureCapacity(nNodes);
+		int nEdges = graph.getNEdges();
+		for (int i = 0; i < nEdges; i++) {
+			setEdge(graph.getSource(i), graph.getTarget(i), true);
+		}
+		try {
+			return fill(nNodes, maxArcLength, wavefront);
+		} finally {
+			// Clear the workspace for the next graph.
+			for (int i = 0; i < nEdges; i++) {
+				setEdge(graph.getSource(i), graph.getTarget(i), false);
+			}
+		}
+	}
 
-				// Rule 02
-				for (int mid = min + 1; mid < max; mid++) {
-					int nCovered1 = nMaxMinCovered.get(min, mid);
-					int nCovered2 = nMaxMinCovered.get(mid, max);
-					update(nMaxMinConnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * Computes the coverage of the specified graph when only edges up to the
+	 * specified length can be covered, using the unpruned
+	 * {@link Grammar#COVERAGE} instead of the pruned {@link Grammar#COUNTING}.
+	 * This visits every span and split point of the chart and is therefore
+	 * much slower, but it does not depend on the filter; it serves as a
+	 * cross-check of {@link #getCoverage(CompactGraph, int, Wavefront)}.
+	 *
+	 * @param graph the graph
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @return the maximal number of edges of the specified graph that can be
+	 * covered
+	 */
+	public int getUnprunedCoverage(CompactGraph graph, int maxArcLength) {
+		int nNodes = graph.getNNodes();
+		ensureCapacity(nNodes);
+		if (unprunedTabulation == null) {
+			unprunedTabulation = new IntTabulation(Grammar.COVERAGE, Semiring.OfInt.MAX_PLUS, weights);
+		}
+		// The unpruned grammar cannot bound the arc length, so longer edges
+		// get no weight instead.
+		int nEdges = graph.getNEdges();
+		for (int i = 0; i < nEdges; i++) {
+			int source = graph.getSource(i);
+			int target = graph.getTarget(i);
+			weights[source][target] = Math.abs(source - target) <= maxArcLength ? 1 : 0;
+		}
+		try {
+			unprunedTabulation.fill(nNodes, Wavefront.SERIAL);
+			return unprunedTabulation.getGoal();
+		} finally {
+			// Clear the workspace for the next graph.
+			for (int i = 0; i < nEdges; i++) {
+				weights[graph.getSource(i)][graph.getTarget(i)] = 0;
+			}
+		}
+	}
 
-				// Rule 03
-				for (int mid = min + 1; mid < max; mid++) {
-					int nCovered1 = nMinMaxCovered.get(min, mid);
-					int nCovered2 = nMaxMinCovered.get(mid, max);
-					update(nMixConnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * Computes the coverage of the specified graph and, if requested, checks
+	 * it against the unpruned grammar.
+	 */
+	private int getCoverage(CompactGraph graph, int maxArcLength, boolean isChecked) {
+		int nEdgesCovered = getCoverage(graph, maxArcLength, Wavefront.SERIAL);
+		if (isChecked) {
+			int nEdgesCoveredUnpruned = getUnprunedCoverage(graph, maxArcLength);
+			if (nEdgesCovered != nEdgesCoveredUnpruned) {
+				throw new IllegalStateException("Coverage of graph " + graph.id + " is " + nEdgesCovered + " with the pruned grammar but " + nEdgesCoveredUnpruned + " with the unpruned grammar");
+			}
+		}
+		return nEdgesCovered;
+	}
 
-				// Rule 04
-				for (int mid = min + 1; mid < max; mid++) {
-					int nCovered1 = nMaxMinCovered.get(min, mid);
-					int nCovered2 = nMinMaxCovered.get(mid, max);
-					update(nMixConnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * Grows the workspace to the specified number of nodes.
+	 */
+	private void ensureCapacity(int nNodes) {
+		if (weights.length < nNodes) {
+			weights = new int[nNodes][nNodes];
+			filter = new GraphFilter(nNodes);
+			tabulation = new IntTabulation(Grammar.COUNTING, Semiring.OfInt.MAX_PLUS, weights);
+			// Restrict the tabulation to the edges of the graph.
+			tabulation.setFilter(filter);
+			unprunedTabulation = null;
+		}
+	}
 
-				// Concatenate an edge-covered graph and the elementary graph.
-				// Rule 05
-				if (max - min >= 2) {
-					int nCovered = nMinMaxCovered.get(min, max - 1);
-					update(nUnconnected, min, max, nCovered);
-				}
+	/**
+	 * Adds the specified edge to the workspace, or removes it.
+	 */
+	private void setEdge(int source, int target, boolean isPresent) {
+		weights[source][target] = isPresent ? 1 : 0;
+		filter.setAdmissible(source, target, isPresent);
+	}
 
-				// Rule 06
-				if (max - min >= 2) {
-					int nCovered = nMinMaxCovered.get(min + 1, max);
-					update(nUnconnected, min, max, nCovered);
-				}
+	/**
+	 * Fills the chart for the edges in the workspace and returns the number
+	 * of edges covered.
+	 */
+	private int fill(int nNodes, int maxArcLength, Wavefront wavefront) {
+		tabulation.setMaxArcLength(maxArcLength);
+		tabulation.fill(nNodes, wavefront);
+		return tabulation.getGoal();
+	}
 
-				// Rule 07
-				if (max - min >= 2) {
-					int nCovered = nMaxMinCovered.get(min, max - 1);
-					update(nUnconnected, min, max, nCovered);
-				}
+	/**
+	 * Computes the coverage totals for the graphs in the specified files, one
+	 * graph at a time on the current thread.
+	 *
+	 * @param fileNames the names of the files
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @return the coverage totals
+	 * @throws IOException if an I/O error occurs
+	 */
+	public static Totals getTotals(List<String> fileNames, int maxArcLength) throws IOException {
+		return getTotals(fileNames, maxArcLength, false);
+	}
 
-				// Rule 08
-				if (max - min >= 2) {
-					int nCovered = nMaxMinCovered.get(min + 1, max);
-					update(nUnconnected, min, max, nCovered);
+	/**
+	 * Computes the coverage totals for the graphs in the specified files, one
+	 * graph at a time on the current thread, optionally checking the coverage
+	 * of each graph against the unpruned grammar.
+	 *
+	 * @param fileNames the names of the files
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @param isChecked whether to check the coverage of each graph
+	 * @return the coverage totals
+	 * @throws IOException if an I/O error occurs
+	 * @throws IllegalStateException if the check fails for some graph
+	 * @see #getUnprunedCoverage(CompactGraph, int)
+	 */
+	public static Totals getTotals(List<String> fileNames, int maxArcLength, boolean isChecked) throws IOException {
+		CoverageCounter calculator = CoverageCounter.getInstance();
+		Totals totals = new Totals();
+		for (String fileName : fileNames) {
+			try (MappedGraphReader reader = new MappedGraphReader(fileName)) {
+				CompactGraph graph;
+				while ((graph = reader.readCompactGraph()) != null) {
+					int nEdgesCovered = calculator.getCoverage(graph, maxArcLength, isChecked);
+					totals.add(graph, nEdgesCovered);
+					report(graph, nEdgesCovered);
 				}
+			}
+		}
+		return totals;
+	}
 
-				// Concatenate a connected graph and an edge-covered graph.
-				// Group 1: The first argument is minmax-connected.
-				// Rule 09
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nMinMaxConnected.get(min, mid);
-					int nCovered2 = nMinMaxCovered.get(mid, max);
-					update(nMinMaxConnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * Computes the coverage totals for the graphs in the specified files
+	 * using a pipeline of threads. The files are read concurrently by up to
+	 * {@code nThreads} reader threads, which hand the graphs to a bounded
+	 * queue. The specified number of worker threads take graphs from the
+	 * queue, compute their coverage with one counter per worker, and keep
+	 * totals of their own, which are merged at the end. The result is the
+	 * same as that of {@link #getTotals(List, int)}.
+	 *
+	 * @param fileNames the names of the files
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @param nThreads the number of worker threads
+	 * @return the coverage totals
+	 * @throws IOException if an I/O error occurs
+	 * @throws InterruptedException if the current thread is interrupted
+	 */
+	public static Totals getTotals(List<String> fileNames, int maxArcLength, int nThreads) throws IOException, InterruptedException {
+		return getTotals(fileNames, maxArcLength, nThreads, false);
+	}
 
-				// Rule 10
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nMinMaxConnected.get(min, mid);
-					int nCovered2 = nMaxMinCovered.get(mid, max);
-					update(nMixConnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * Computes the coverage totals for the graphs in the specified files
+	 * using a pipeline of threads, optionally checking the coverage of each
+	 * graph against the unpruned grammar.
+	 *
+	 * @param fileNames the names of the files
+	 * @param maxArcLength the maximal length of a covered edge
+	 * @param nThreads the number of worker threads
+	 * @param isChecked whether to check the coverage of each graph
+	 * @return the coverage totals
+	 * @throws IOException if an I/O error occurs
+	 * @throws InterruptedException if the current thread is interrupted
+	 * @throws IllegalStateException if the check fails for some graph
+	 * @see #getTotals(List, int, int)
+	 */
+	public static Totals getTotals(List<String> fileNames, int maxArcLength, int nThreads, boolean isChecked) throws IOException, InterruptedException {
+		BlockingQueue<CompactGraph> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY_PER_THREAD * nThreads);
+		ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, Math.min(fileNames.size(), nThreads)));
+		ExecutorService workers = Executors.newFixedThreadPool(nThreads);
+		try {
+			List<Future<Totals>> workerResults = new ArrayList<>();
+			for (int i = 0; i < nThreads; i++) {
+				workerResults.add(workers.submit(() -> work(queue, maxArcLength, isChecked)));
+			}
 
-				// Group 2: The first argument is maxmin-connected.
-				// Rule 11
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nMaxMinConnected.get(min, mid);
-					int nCovered2 = nMinMaxCovered.get(mid, max);
-					update(nMixConnected, min, max, nCovered1, nCovered2);
-				}
+			List<Future<?>> readerResults = new ArrayList<>();
+			for (String fileName : fileNames) {
+				readerResults.add(readers.submit(() -> {
+					try (MappedGraphReader reader = new MappedGraphReader(fileName)) {
+						CompactGraph graph;
+						while ((graph = reader.readCompactGraph()) != null) {
+							queue.put(graph);
+						}
+					}
+					return null;
+				}));
+			}
 
-				// Rule 12
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nMaxMinConnected.get(min, mid);
-					int nCovered2 = nMaxMinCovered.get(mid, max);
-					update(nMaxMinConnected, min, max, nCovered1, nCovered2);
+			// Wait for the readers, then tell every worker to stop.
+			try {
+				for (Future<?> readerResult : readerResults) {
+					getResult(readerResult);
 				}
-
-				// Group 3: The first argument is mix-connected.
-				// Rule 13
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nMixConnected.get(min, mid);
-					int nCovered2 = nMinMaxCovered.get(mid, max);
-					update(nMixConnected, min, max, nCovered1, nCovered2);
+			} finally {
+				for (int i = 0; i < nThreads; i++) {
+					queue.put(END_OF_INPUT);
 				}
+			}
 
-				// Rule 14
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nMixConnected.get(min, mid);
-					int nCovered2 = nMaxMinCovered.get(mid, max);
-					update(nMixConnected, min, max, nCovered1, nCovered2);
-				}
+			Totals totals = new Totals();
+			for (Future<Totals> workerResult : workerResults) {
+				totals.add(getResult(workerResult));
+			}
+			return totals;
+		} finally {
+			readers.shutdownNow();
+			workers.shutdownNow();
+		}
+	}
 
-				// Concatenate a connected graph and the elementary graph.
-				// Rule 15
-				if (max - min >= 3) {
-					int nCovered = nMinMaxConnected.get(min, max - 1);
-					update(nUnconnected, min, max, nCovered);
+	/**
+	 * Computes the coverage of the graphs in the specified queue until the
+	 * end of the input. If the computation fails for some graph, the worker
+	 * keeps taking graphs from the queue, so that the readers do not block,
+	 * and rethrows the exception at the end of the input.
+	 */
+	private static Totals work(BlockingQueue<CompactGraph> queue, int maxArcLength, boolean isChecked) throws InterruptedException {
+		CoverageCounter calculator = new CoverageCounter();
+		Totals totals = new Totals();
+		RuntimeException failure = null;
+		CompactGraph graph;
+		while ((graph = queue.take()) != END_OF_INPUT) {
+			if (failure == null) {
+				try {
+					int nEdgesCovered = calculator.getCoverage(graph, maxArcLength, isChecked);
+					totals.add(graph, nEdgesCovered);
+					report(graph, nEdgesCovered);
+				} catch (RuntimeException e) {
+					failure = e;
 				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+		return totals;
+	}
 
-				// Rule 16
-				if (max - min >= 3) {
-					int nCovered = nMaxMinConnected.get(min, max - 1);
-					update(nUnconnected, min, max, nCovered);
-				}
+	/**
+	 * Waits for the specified task and returns its result, rethrowing its
+	 * exception.
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
 
-				// Rule 17
-				if (max - min >= 3) {
-					int nCovered = nMixConnected.get(min, max - 1);
-					update(nUnconnected, min, max, nCovered);
+	/**
+	 * Reports a graph that is noncrossing but cannot be covered.
+	 */
+	private static void report(CompactGraph graph, int nEdgesCovered) {
+		// Only small graphs are reported, so test their size first.
+		if (nEdgesCovered != graph.getNEdges() && graph.getNNodes() < 5) {
+			InspectedGraph inspectedGraph = new InspectedGraph(graph);
+			if (inspectedGraph.isNoncrossing()) {
+				synchronized (System.out) {
+					System.out.println("graph " + graph.id + " is noncrossing but cannot be covered");
+					for (int i = 0; i < graph.getNEdges(); i++) {
+						System.out.println(graph.getSource(i) + " -> " + graph.getTarget(i));
+					}
 				}
+			}
+		}
+//		if (nEdgesCovered == graph.getNEdges()) {
+//			InspectedGraph inspectedGraph = new InspectedGraph(graph);
+//			if (!inspectedGraph.isNoncrossing()) {
+//				System.out.println("graph " + graph.id + " is not noncrossing but can be covered");
+//			}
+//		}
+	}
 
-				// Concatenate to an unconnected graph.
-				// Rule 18
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nUnconnected.get(min, mid);
-					int nCovered2 = nMinMaxCovered.get(mid, max);
-					update(nUnconnected, min, max, nCovered1, nCovered2);
-				}
+	/**
+	 * The numbers of edges and graphs in a collection of graphs, and the
+	 * numbers of edges and graphs that can be covered.
+	 */
+	public static class Totals {
 
-				// Rule 19
-				for (int mid = min + 2; mid < max; mid++) {
-					int nCovered1 = nUnconnected.get(min, mid);
-					int nCovered2 = nMaxMinCovered.get(mid, max);
-					update(nUnconnected, min, max, nCovered1, nCovered2);
-				}
+		private long nEdges;
 
-				// Rule 20
-				if (max - min >= 2) { // Applies even to the elementary graph!
-					int nCovered = nUnconnected.get(min, max - 1);
-					update(nUnconnected, min, max, nCovered);
-				}
+		private long nEdgesCovered;
 
-				// Cover a graph.
-				// Group 1: The covering edge is min -> max.
-				// Rule 21
-				{
-					// Adds the edge min -> max
-					int nCovered = nMinMaxConnected.get(min, max);
-					nCovered += filter.isAdmissible(min, max) ? 1 : 0;
-					update(nMinMaxCovered, min, max, nCovered);
-				}
+		private long nGraphs;
 
-				// Rule 22
-				{
-					// Adds the edge min -> max
-					int nCovered = nMixConnected.get(min, max);
-					nCovered += filter.isAdmissible(min, max) ? 1 : 0;
-					update(nMinMaxCovered, min, max, nCovered);
-				}
+		private long nGraphsCovered;
 
-				// Rule 23
-				{
-					// Adds the edge min -> max
-					int nCovered = nUnconnected.get(min, max);
-					nCovered += filter.isAdmissible(min, max) ? 1 : 0;
-					update(nMinMaxCovered, min, max, nCovered);
-				}
+		/**
+		 * Adds the specified graph to these totals.
+		 *
+		 * @param graph the graph
+		 * @param nEdgesCovered the number of edges of the graph that can be
+		 * covered
+		 */
+		public void add(Graph graph, int nEdgesCovered) {
+			this.nEdges += graph.getNEdges();
+			this.nEdgesCovered += nEdgesCovered;
+			this.nGraphs += 1;
+			this.nGraphsCovered += nEdgesCovered == graph.getNEdges() ? 1 : 0;
+		}
 
-				// Group 2: The covering edge is max -> min.
-				// Rule 24
-				{
-					// Adds the edge max -> min
-					int nCovered = nMaxMinConnected.get(min, max);
-					nCovered += filter.isAdmissible(max, min) ? 1 : 0;
-					update(nMaxMinCovered, min, max, nCovered);
-				}
+		/**
+		 * Adds the specified graph to these totals.
+		 *
+		 * @param graph the graph
+		 * @param nEdgesCovered the number of edges of the graph that can be
+		 * covered
+		 */
+		public void add(CompactGraph graph, int nEdgesCovered) {
+			this.nEdges += graph.getNEdges();
+			this.nEdgesCovered += nEdgesCovered;
+			this.nGraphs += 1;
+			this.nGraphsCovered += nEdgesCovered == graph.getNEdges() ? 1 : 0;
+		}
 
-				// Rule 25
-				{
-					// Adds the edge max -> min
-					int nCovered = nMixConnected.get(min, max);
-					nCovered += filter.isAdmissible(max, min) ? 1 : 0;
-					update(nMaxMinCovered, min, max, nCovered);
-				}
+		/**
+		 * Adds the specified totals to these totals.
+		 *
+		 * @param other the totals to add
+		 */
+		public void add(Totals other) {
+			this.nEdges += other.nEdges;
+			this.nEdgesCovered += other.nEdgesCovered;
+			this.nGraphs += other.nGraphs;
+			this.nGraphsCovered += other.nGraphsCovered;
+		}
 
-				// Rule 26
-				{
-					// Adds the edge max -> min
-					int nCovered = nUnconnected.get(min, max);
-					nCovered += filter.isAdmissible(max, min) ? 1 : 0;
-					update(nMaxMinCovered, min, max, nCovered);
-				}
-			}
+		public long getNEdges() {
+			return nEdges;
 		}
 
-		int result = 0;
-		result = Math.max(result, nMinMaxCovered.get(0, nNodes - 1));
-		result = Math.max(result, nMaxMinCovered.get(0, nNodes - 1));
-		result = Math.max(result, nMinMaxConnected.get(0, nNodes - 1));
-		result = Math.max(result, nMaxMinConnected.get(0, nNodes - 1));
-		result = Math.max(result, nMixConnected.get(0, nNodes - 1));
-		result = Math.max(result, nUnconnected.get(0, nNodes - 1));
-		return result;
-	}
+		public long getNEdgesCovered() {
+			return nEdgesCovered;
+		}
 
-	private static void update(IntChart chart, int min, int max, int nCovered1) {
-		chart.set(min, max, Math.max(chart.get(min, max), nCovered1));
-	}
+		public long getNGraphs() {
+			return nGraphs;
+		}
 
-	private static void update(IntChart chart, int min, int max, int nCovered1, int nCovered2) {
-		chart.set(min, max, Math.max(chart.get(min, max), nCovered1 + nCovered2));
+		public long getNGraphsCovered() {
+			return nGraphsCovered;
+		}
 	}
 
-	public static void main(String[] args) throws IOException {
-		int nEdges = 0;
-		int nEdgesCovered = 0;
-		int nGraphs = 0;
-		int nGraphsCovered = 0;
-
-		CoverageCounter calculator = CoverageCounter.getInstance();
-
-		for (String arg : args) {
-			try (GraphReader reader = new GraphReader(arg)) {
-				Graph graph;
-				while ((graph = reader.readGraph()) != null) {
-					int nEdgesCoveredLocal = calculator.getCoverage(graph);
-					nEdges += graph.getNEdges();
-					nEdgesCovered += nEdgesCoveredLocal;
-					nGraphs += 1;
-					nGraphsCovered += nEdgesCoveredLocal == graph.getNEdges() ? 1 : 0;
-					if (nEdgesCoveredLocal != graph.getNEdges()) {
-						InspectedGraph inspectedGraph = new InspectedGraph(graph);
-						if (inspectedGraph.isNoncrossing()) {
-							if (graph.getNNodes() < 5) {
-								System.out.println("graph " + graph.id + " is noncrossing but cannot be covered");
-								for (Edge edge : graph.getEdges()) {
-									System.out.println(edge.source + " -> " + edge.target);
-								}
-							}
-						}
-					}
-//					if (nEdgesCoveredLocal == graph.getNEdges()) {
-//						InspectedGraph inspectedGraph = new InspectedGraph(graph);
-//						if (!inspectedGraph.isNoncrossing()) {
-//							System.out.println("graph " + graph.id + " is not noncrossing but can be covered");
-//						}
-//					}
-				}
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int maxArcLength = Integer.MAX_VALUE;
+		int nThreads = 0;
+		boolean isChecked = false;
+		int first = 0;
+		while (first < args.length && args[first].startsWith("-")) {
+			if (args[first].equals("-c")) {
+				isChecked = true;
+				first++;
+				continue;
+			}
+			if (first + 1 == args.length) {
+				throw new IllegalArgumentException("Missing argument: " + args[first]);
 			}
+			if (args[first].equals("-l")) {
+				maxArcLength = Integer.parseInt(args[first + 1]);
+			} else if (args[first].equals("-t")) {
+				nThreads = Integer.parseInt(args[first + 1]);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + args[first]);
+			}
+			first += 2;
 		}
+		List<String> fileNames = Arrays.asList(args).subList(first, args.length);
+
+		Totals totals = nThreads > 0 ? getTotals(fileNames, maxArcLength, nThreads, isChecked) : getTotals(fileNames, maxArcLength, isChecked);
 
 		NumberFormat percentFormatter = NumberFormat.getPercentInstance(Locale.US);
 		percentFormatter.setMinimumFractionDigits(2);
 		percentFormatter.setMaximumFractionDigits(2);
 
-		System.err.format("Upper bound on recall (edges): %s%n", percentFormatter.format((double) nEdgesCovered / (double) nEdges));
-		System.err.format("Upper bound on recall (complete graphs): %s%n", percentFormatter.format((double) nGraphsCovered / (double) nGraphs));
+		System.err.format("Upper bound on recall (edges): %s%n", percentFormatter.format((double) totals.getNEdgesCovered() / (double) totals.getNEdges()));
+		System.err.format("Upper bound on recall (complete graphs): %s%n", percentFormatter.format((double) totals.getNGraphsCovered() / (double) totals.getNGraphs()));
 
 		System.exit(0);
 	}
@@ -0,0 +1,232 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+/**
+ * The crossing edges of a graph. Two edges cross if their spans overlap
+ * without one containing the other, that is, if
+ * {@code min1 < min2 < max1 < max2} or vice versa, where {@code min} and
+ * {@code max} are the smaller and the larger endpoint of an edge. Edges that
+ * share an endpoint do not cross.
+ *
+ * <p>
+ * The edges are sorted by their spans with two passes of counting sort. The
+ * test whether a graph is noncrossing then matches the spans like
+ * parentheses, using a stack, in time linear in the number of nodes and
+ * edges. The number of crossing pairs of edges is counted with a Fenwick
+ * tree over the right endpoints, in time O(E log N).
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class Crossings {
+
+	/**
+	 * The number of edges that cross each edge, indexed by edge ID.
+	 */
+	private final int[] nCrossings;
+
+	/**
+	 * The number of pairs of crossing edges.
+	 */
+	private final long nCrossingPairs;
+
+	/**
+	 * Computes the crossings of the specified graph.
+	 *
+	 * @param graph a graph
+	 */
+	public Crossings(Graph graph) {
+		this(new CompactGraph(graph));
+	}
+
+	/**
+	 * Computes the crossings of the specified graph.
+	 *
+	 * @param graph a graph
+	 */
+	public Crossings(CompactGraph graph) {
+		int nNodes = graph.getNNodes();
+		int nEdges = graph.getNEdges();
+		int[] mins = new int[nEdges];
+		int[] maxs = new int[nEdges];
+		for (int edge = 0; edge < nEdges; edge++) {
+			mins[edge] = Math.min(graph.getSource(edge), graph.getTarget(edge));
+			maxs[edge] = Math.max(graph.getSource(edge), graph.getTarget(edge));
+		}
+		this.nCrossings = new int[nEdges];
+
+		// Count the crossings of each edge with edges that start further left.
+		this.nCrossingPairs = countCrossings(mins, maxs, nNodes, nCrossings);
+
+		// Mirror the spans to count the crossings with edges that start
+		// further right.
+		for (int edge = 0; edge < nEdges; edge++) {
+			int min = mins[edge];
+			mins[edge] = nNodes - 1 - maxs[edge];
+			maxs[edge] = nNodes - 1 - min;
+		}
+		countCrossings(mins, maxs, nNodes, nCrossings);
+	}
+
+	/**
+	 * Tests whether the specified graph is noncrossing. This is faster than
+	 * counting the crossings.
+	 *
+	 * @param graph a graph
+	 * @return {@code true} if and only if the specified graph is noncrossing
+	 */
+	public static boolean isNoncrossing(CompactGraph graph) {
+		int nNodes = graph.getNNodes();
+		int nEdges = graph.getNEdges();
+		int[] mins = new int[nEdges];
+		int[] maxs = new int[nEdges];
+		for (int edge = 0; edge < nEdges; edge++) {
+			mins[edge] = Math.min(graph.getSource(edge), graph.getTarget(edge));
+			maxs[edge] = Math.max(graph.getSource(edge), graph.getTarget(edge));
+		}
+		int[] edges = sortEdges(mins, maxs, nNodes);
+
+		// The right endpoints of the open spans, each nested in the previous.
+		int[] stack = new int[nEdges];
+		int top = -1;
+		for (int edge : edges) {
+			// Close the spans that end at or before the start of this span.
+			while (top >= 0 && stack[top] <= mins[edge]) {
+				top--;
+			}
+			// The innermost open span starts at or before this span and ends
+			// after its start; unless it contains this span, they cross.
+			if (top >= 0 && stack[top] < maxs[edge]) {
+				return false;
+			}
+			stack[++top] = maxs[edge];
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the IDs of the edges sorted by left endpoint in ascending
+	 * order and, for edges with the same left endpoint, by right endpoint in
+	 * descending order.
+	 */
+	private static int[] sortEdges(int[] mins, int[] maxs, int nNodes) {
+		int nEdges = mins.length;
+		int[] byMax = new int[nEdges];
+		int[] counts = new int[nNodes + 1];
+		// Sort by right endpoint, descending.
+		for (int edge = 0; edge < nEdges; edge++) {
+			counts[nNodes - 1 - maxs[edge] + 1]++;
+		}
+		for (int i = 1; i <= nNodes; i++) {
+			counts[i] += counts[i - 1];
+		}
+		for (int edge = 0; edge < nEdges; edge++) {
+			byMax[counts[nNodes - 1 - maxs[edge]]++] = edge;
+		}
+		// Sort stably by left endpoint, ascending.
+		int[] edges = new int[nEdges];
+		counts = new int[nNodes + 1];
+		for (int edge = 0; edge < nEdges; edge++) {
+			counts[mins[edge] + 1]++;
+		}
+		for (int i = 1; i <= nNodes; i++) {
+			counts[i] += counts[i - 1];
+		}
+		for (int edge : byMax) {
+			edges[counts[mins[edge]]++] = edge;
+		}
+		return edges;
+	}
+
+	/**
+	 * Adds to each edge the number of edges that start strictly to the left
+	 * of it and end strictly between its endpoints, and returns the total
+	 * number of such pairs.
+	 */
+	private static long countCrossings(int[] mins, int[] maxs, int nNodes, int[] nCrossings) {
+		int[] edges = sortEdges(mins, maxs, nNodes);
+		// A Fenwick tree over the right endpoints of the edges seen so far.
+		int[] tree = new int[nNodes + 1];
+		long nPairs = 0L;
+		int i = 0;
+		while (i < edges.length) {
+			// Query the edges with the same left endpoint, then insert them.
+			int j = i;
+			int min = mins[edges[i]];
+			for (; j < edges.length && mins[edges[j]] == min; j++) {
+				int edge = edges[j];
+				int n = maxs[edge] - 1 > min ? prefixSum(tree, maxs[edge] - 1) - prefixSum(tree, min) : 0;
+				nCrossings[edge] += n;
+				nPairs += n;
+			}
+			for (; i < j; i++) {
+				for (int k = maxs[edges[i]] + 1; k <= nNodes; k += k & -k) {
+					tree[k]++;
+				}
+			}
+		}
+		return nPairs;
+	}
+
+	/**
+	 * Returns the number of right endpoints less than or equal to the
+	 * specified position.
+	 */
+	private static int prefixSum(int[] tree, int position) {
+		int sum = 0;
+		for (int k = position + 1; k > 0; k -= k & -k) {
+			sum += tree[k];
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the number of pairs of crossing edges.
+	 *
+	 * @return the number of pairs of crossing edges
+	 */
+	public long getNCrossingPairs() {
+		return nCrossingPairs;
+	}
+
+	/**
+	 * Returns the number of edges that cross the specified edge.
+	 *
+	 * @param edge the ID of an edge
+	 * @return the number of edges that cross the specified edge
+	 */
+	public int getNCrossings(int edge) {
+		return nCrossings[edge];
+	}
+
+	/**
+	 * Returns the IDs of the edges that cross at least one other edge, in
+	 * ascending order.
+	 *
+	 * @return the IDs of the edges that cross at least one other edge
+	 */
+	public int[] getCrossingEdges() {
+		int n = 0;
+		for (int count : nCrossings) {
+			n += count > 0 ? 1 : 0;
+		}
+		int[] edges = new int[n];
+		n = 0;
+		for (int edge = 0; edge < nCrossings.length; edge++) {
+			if (nCrossings[edge] > 0) {
+				edges[n++] = edge;
+			}
+		}
+		return edges;
+	}
+
+	/**
+	 * Tests whether the graph is noncrossing.
+	 *
+	 * @return {@code true} if and only if the graph is noncrossing
+	 */
+	public boolean isNoncrossing() {
+		return nCrossingPairs == 0L;
+	}
+}
@@ -3,9 +3,24 @@
  */
 package se.liu.ida.nlp.ncdag;
 
+import java.util.Arrays;
+
 /**
  * Depth-first graph search.
  *
+ * <p>
+ * The search uses an explicit stack rather than recursion, so that it does
+ * not overflow the call stack on long paths. Along with the preorder and
+ * postorder timestamps, it computes the strongly connected components of the
+ * graph using Tarjan's algorithm, and a topological order of the nodes if the
+ * graph is acyclic. When the graph is searched as an undirected graph, the
+ * strongly connected components are the connected components.
+ *
+ * <p>
+ * A search object can be reused for several graphs with
+ * {@link #search(CompactGraph, boolean)}. Its buffers grow to the largest
+ * graph searched, so that searching further graphs does not allocate memory.
+ *
  * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
  */
 public class DFS {
@@ -13,17 +28,17 @@ public class DFS {
 	/**
 	 * Whether to search the graph as an undirected graph.
 	 */
-	private final boolean undirected;
+	private boolean undirected;
 
 	/**
 	 * The graph.
 	 */
-	private final Graph graph;
+	private CompactGraph graph;
 
 	/**
 	 * The index of the run during which each node was (first) visited.
 	 */
-	private final int[] run;
+	private int[] run;
 
 	/**
 	 * The number of runs.
@@ -33,12 +48,57 @@ public class DFS {
 	/**
 	 * The preorder timestamps of each node.
 	 */
-	private final int[] enter;
+	private int[] enter;
 
 	/**
 	 * The postorder timestamps of each node.
 	 */
-	private final int[] leave;
+	private int[] leave;
+
+	/**
+	 * The smallest preorder timestamp of a node on the component stack that
+	 * can be reached from the subtree of each node.
+	 */
+	private int[] lowLink;
+
+	/**
+	 * The strongly connected component of each node, or -1 while the node is
+	 * on the component stack.
+	 */
+	private int[] component;
+
+	/**
+	 * The number of strongly connected components.
+	 */
+	private int nComponents;
+
+	/**
+	 * The nodes in the order in which they were left.
+	 */
+	private int[] postorder;
+
+	/**
+	 * The index of the next neighbor to visit, for each node on the search
+	 * stack.
+	 */
+	private int[] next;
+
+	/**
+	 * The search stack.
+	 */
+	private int[] stack;
+
+	/**
+	 * The component stack of Tarjan's algorithm.
+	 */
+	private int[] componentStack;
+
+	/**
+	 * Construct a search object with empty buffers.
+	 */
+	public DFS() {
+		allocate(0);
+	}
 
 	/**
 	 * A depth-first search on the specified graph.
@@ -48,15 +108,7 @@ public class DFS {
 	 * undirected graph
 	 */
 	public DFS(Graph graph, boolean undirected) {
-		this.undirected = undirected;
-
-		this.graph = graph;
-
-		int nNodes = graph.getNNodes();
-		this.run = new int[nNodes];
-		this.enter = new int[nNodes];
-		this.leave = new int[nNodes];
-		computeTimestamps();
+		this(new CompactGraph(graph), undirected);
 	}
 
 	/**
@@ -69,70 +121,133 @@ public class DFS {
 	}
 
 	/**
-	 * Computes the preorder and postorder timestamps for the inspected graph.
+	 * A depth-first search on the specified graph.
+	 *
+	 * @param graph a graph
+	 * @param undirected if {@code true}, the graph will be searched as an
+	 * undirected graph
 	 */
-	private void computeTimestamps() {
-		for (Node node : graph.getNodes()) {
-			enter[node.id] = -1;
-		}
-		Timer timer = new Timer();
-		for (Node node : graph.getNodes()) {
-			if (enter[node.id] == -1) {
-				computeTimestamps(node, timer);
-				nRuns++;
-			}
-		}
+	public DFS(CompactGraph graph, boolean undirected) {
+		allocate(graph.getNNodes());
+		search(graph, undirected);
 	}
 
 	/**
-	 * Computes the preorder and postorder timestamps for the subgraph starting
-	 * at the specified node.
+	 * A depth-first search on the specified graph.
 	 *
-	 * @param node the entry point for the subgraph
-	 * @param timer the global timer
-	 */
-	private void computeTimestamps(Node node, Timer timer) {
-		run[node.id] = nRuns;
-		enter[node.id] = timer.tick();
-		for (Edge outgoingEdge : node.getOutgoingEdges()) {
-			// Only visit nodes that have not been visited before.
-			if (enter[outgoingEdge.target] == -1) {
-				computeTimestamps(graph.getNode(outgoingEdge.target), timer);
-			}
+	 * @param graph a graph
+	 */
+	public DFS(CompactGraph graph) {
+		this(graph, false);
+	}
+
+	private void allocate(int nNodes) {
+		this.run = new int[nNodes];
+		this.enter = new int[nNodes];
+		this.leave = new int[nNodes];
+		this.lowLink = new int[nNodes];
+		this.component = new int[nNodes];
+		this.postorder = new int[nNodes];
+		this.next = new int[nNodes];
+		this.stack = new int[nNodes];
+		this.componentStack = new int[nNodes];
+	}
+
+	/**
+	 * Searches the specified graph, replacing the results of the previous
+	 * search.
+	 *
+	 * @param graph a graph
+	 * @param undirected if {@code true}, the graph will be searched as an
+	 * undirected graph
+	 */
+	public void search(CompactGraph graph, boolean undirected) {
+		this.graph = graph;
+		this.undirected = undirected;
+		int nNodes = graph.getNNodes();
+		if (enter.length < nNodes) {
+			allocate(nNodes);
 		}
-		if (undirected) {
-			for (Edge incomingEdge : node.getIncomingEdges()) {
-				if (enter[incomingEdge.source] == -1) {
-					computeTimestamps(graph.getNode(incomingEdge.source), timer);
+		Arrays.fill(enter, 0, nNodes, -1);
+		nRuns = 0;
+		nComponents = 0;
+		int time = 0;
+		int nLeft = 0;
+		for (int root = 0; root < nNodes; root++) {
+			if (enter[root] != -1) {
+				continue;
+			}
+			int top = -1;
+			int componentTop = -1;
+
+			// Enter the root.
+			run[root] = nRuns;
+			enter[root] = lowLink[root] = time++;
+			component[root] = -1;
+			next[root] = 0;
+			stack[++top] = root;
+			componentStack[++componentTop] = root;
+
+			while (top >= 0) {
+				int node = stack[top];
+				int neighbor = getNeighbor(node, next[node]++);
+				if (neighbor >= 0) {
+					if (enter[neighbor] == -1) {
+						// Enter the neighbor.
+						run[neighbor] = nRuns;
+						enter[neighbor] = lowLink[neighbor] = time++;
+						component[neighbor] = -1;
+						next[neighbor] = 0;
+						stack[++top] = neighbor;
+						componentStack[++componentTop] = neighbor;
+					} else if (component[neighbor] == -1) {
+						// The neighbor is on the component stack.
+						lowLink[node] = Math.min(lowLink[node], enter[neighbor]);
+					}
+				} else {
+					// Leave the node.
+					top--;
+					leave[node] = time++;
+					postorder[nLeft++] = node;
+					if (lowLink[node] == enter[node]) {
+						int member;
+						do {
+							member = componentStack[componentTop--];
+							component[member] = nComponents;
+						} while (member != node);
+						nComponents++;
+					}
+					if (top >= 0) {
+						int parent = stack[top];
+						lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+					}
 				}
 			}
+			nRuns++;
 		}
-		leave[node.id] = timer.tick();
 	}
 
 	/**
-	 * Timer used in depth-first search.
+	 * Returns the neighbor with the specified index of the specified node:
+	 * first the targets of the outgoing edges, then, in an undirected search,
+	 * the sources of the incoming edges. Returns -1 if there is no such
+	 * neighbor.
 	 */
-	private static final class Timer {
-
-		/**
-		 * The current time.
-		 */
-		private int time;
-
-		/**
-		 * Returns the current time, then increments it.
-		 *
-		 * @return the current time
-		 */
-		public int tick() {
-			return time++;
+	private int getNeighbor(int node, int i) {
+		int outdegree = graph.getOutdegree(node);
+		if (i < outdegree) {
+			return graph.getSuccessor(node, i);
 		}
+		if (undirected && i - outdegree < graph.getIndegree(node)) {
+			return graph.getPredecessor(node, i - outdegree);
+		}
+		return -1;
 	}
 
 	/**
 	 * Returns the number of runs of the search. This is the number of times the
-	 * recursive search was called to cover all nodes in the graph.
+	 * search was started from an unvisited node to cover all nodes in the
+	 * graph.
 	 *
 	 * @return the number of runs of the search
 	 */
@@ -140,6 +255,83 @@ public class DFS {
 		return nRuns;
 	}
 
+	/**
+	 * Returns the index of the run during which the specified node was
+	 * visited.
+	 *
+	 * @param node a node in the searched graph
+	 * @return the index of the run during which the specified node was
+	 * visited
+	 */
+	public int getRun(int node) {
+		return run[node];
+	}
+
+	/**
+	 * Returns the preorder timestamp of the specified node.
+	 *
+	 * @param node a node in the searched graph
+	 * @return the preorder timestamp of the specified node
+	 */
+	public int getEnterTime(int node) {
+		return enter[node];
+	}
+
+	/**
+	 * Returns the postorder timestamp of the specified node.
+	 *
+	 * @param node a node in the searched graph
+	 * @return the postorder timestamp of the specified node
+	 */
+	public int getLeaveTime(int node) {
+		return leave[node];
+	}
+
+	/**
+	 * Returns the number of strongly connected components of the searched
+	 * graph.
+	 *
+	 * @return the number of strongly connected components of the searched
+	 * graph
+	 */
+	public int getNStronglyConnectedComponents() {
+		return nComponents;
+	}
+
+	/**
+	 * Returns the index of the strongly connected component of the specified
+	 * node. The components are numbered in reverse topological order: every
+	 * edge between two different components leads from a component with a
+	 * higher index to a component with a lower index.
+	 *
+	 * @param node a node in the searched graph
+	 * @return the index of the strongly connected component of the specified
+	 * node
+	 */
+	public int getStronglyConnectedComponent(int node) {
+		return component[node];
+	}
+
+	/**
+	 * Returns a topological order of the nodes of the searched graph, that is,
+	 * the nodes in reverse postorder. This order is only a topological order
+	 * if the graph is acyclic.
+	 *
+	 * @return the nodes of the searched graph in reverse postorder, or
+	 * {@code null} if the searched graph is cyclic
+	 */
+	public int[] getTopologicalOrder() {
+		if (isCyclic()) {
+			return null;
+		}
+		int nNodes = graph.getNNodes();
+		int[] order = new int[nNodes];
+		for (int i = 0; i < nNodes; i++) {
+			order[i] = postorder[nNodes - 1 - i];
+		}
+		return order;
+	}
+
 	/**
 	 * Test whether the specified edge is a self-loop.
 	 *
@@ -147,7 +339,11 @@ public class DFS {
 	 * @return {@code true} if the specified edge is a self-loop
 	 */
 	public boolean isSelfLoop(Edge edge) {
-		return edge.source == edge.target;
+		return isSelfLoop(edge.source, edge.target);
+	}
+
+	private static boolean isSelfLoop(int source, int target) {
+		return source == target;
 	}
 
 	/**
@@ -157,7 +353,11 @@ public class DFS {
 	 * @return {@code true} if the specified edge is a back edge
 	 */
 	public boolean isBackEdge(Edge edge) {
-		return enter[edge.target] < enter[edge.source] && leave[edge.source] < leave[edge.target];
+		return isBackEdge(edge.source, edge.target);
+	}
+
+	private boolean isBackEdge(int source, int target) {
+		return enter[target] < enter[source] && leave[source] < leave[target];
 	}
 
 	/**
@@ -166,8 +366,10 @@ public class DFS {
 	 * @return {@code true} if the searched graph is cyclic
 	 */
 	public boolean isCyclic() {
-		for (Edge edge : graph.getEdges()) {
-			if (isSelfLoop(edge) || isBackEdge(edge)) {
+		for (int edge = 0; edge < graph.getNEdges(); edge++) {
+			int source = graph.getSource(edge);
+			int target = graph.getTarget(edge);
+			if (isSelfLoop(source, target) || isBackEdge(source, target)) {
 				return true;
 			}
 		}
@@ -0,0 +1,304 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.Arrays;
+
+/**
+ * Find the highest-scoring noncrossing acyclic digraph under an
+ * edge-factored model. The score of a graph is the sum of the scores of its
+ * edges.
+ *
+ * <p>
+ * The decoder runs the max-plus tabulation of {@link Grammar#COUNTING} over
+ * {@code float} scores and records, for every item, a compact backpointer to
+ * the best rule instance. The charts are kept between calls and only grow,
+ * so decoding a sequence of sentences allocates little beyond the graphs that
+ * are returned. With a {@link GraphFilter}, only admissible edges are
+ * considered, and the decoder visits only the spans and split points that
+ * these edges make reachable. A decoder must not be used by more than one
+ * thread at a time; use one decoder per thread instead.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class Decoder extends Tabulation {
+
+	/**
+	 * The scores of the items; each cell holds one value per item type.
+	 */
+	private FloatChart chart;
+
+	/**
+	 * The backpointers of the items; each cell holds one value per item type.
+	 * A backpointer has the form {@code mid << 8 | (rule + 1)}, where
+	 * {@code mid} is the split point of a binary rule and zero for all other
+	 * rules. The backpointer of an axiom is zero.
+	 */
+	private IntChart backpointers;
+
+	/**
+	 * The arc scores of the current sentence.
+	 */
+	private float[][] scores;
+
+	/**
+	 * The stack used when reading off the best derivation.
+	 */
+	private int[] stack = new int[48];
+
+	/**
+	 * The edges of the best derivation, encoded as
+	 * {@code target * nNodes + source}.
+	 */
+	private long[] edges = new long[16];
+
+	/**
+	 * Construct a new decoder.
+	 */
+	public Decoder() {
+		this(Grammar.COUNTING);
+	}
+
+	/**
+	 * Construct a new decoder for the specified grammar. The grammar should
+	 * have exactly one derivation for every graph of interest.
+	 *
+	 * @param grammar the grammar
+	 */
+	public Decoder(Grammar grammar) {
+		super(grammar);
+		if (grammar.getNRules() >= 0xff) {
+			throw new IllegalArgumentException("Too many rules: " + grammar.getNRules());
+		}
+	}
+
+	/**
+	 * Computes the highest-scoring graph for the specified sentence. The nodes
+	 * of the returned graph are copies of the nodes of the sentence, except
+	 * that a node is marked as a predicate if and only if it has outgoing
+	 * edges. The edges carry the label {@link Constants#UNDEFINED}.
+	 *
+	 * @param sentence a graph providing the nodes of the sentence
+	 * @param scores the scores of the edges, indexed by source and target
+	 * @return the highest-scoring graph
+	 */
+	public Graph decode(Graph sentence, float[][] scores) {
+		return decode(sentence, scores, Wavefront.SERIAL);
+	}
+
+	/**
+	 * Computes the highest-scoring graph for the specified sentence, computing
+	 * the chart cells according to the specified schedule.
+	 *
+	 * @param sentence a graph providing the nodes of the sentence
+	 * @param scores the scores of the edges, indexed by source and target
+	 * @param wavefront the schedule for the computation of the chart cells
+	 * @return the highest-scoring graph
+	 * @see #decode(Graph, float[][])
+	 */
+	public Graph decode(Graph sentence, float[][] scores, Wavefront wavefront) {
+		int nNodes = sentence.getNNodes();
+		assert scores.length >= nNodes;
+		this.scores = scores;
+		fill(nNodes, wavefront);
+		this.scores = null;
+
+		int nEdges = getBestEdges();
+		boolean[] isPred = new boolean[nNodes];
+		for (int i = 0; i < nEdges; i++) {
+			isPred[(int) (edges[i] % nNodes)] = true;
+		}
+		Graph graph = new Graph(sentence.id);
+		for (Node node : sentence.getNodes()) {
+			graph.addNode(node.form, node.lemma, node.pos, node.isTop, isPred[node.id]);
+		}
+		for (int i = 0; i < nEdges; i++) {
+			graph.addEdge((int) (edges[i] % nNodes), (int) (edges[i] / nNodes), Constants.UNDEFINED);
+		}
+		return graph;
+	}
+
+	/**
+	 * Returns the score of the most recently decoded graph.
+	 *
+	 * @return the score of the most recently decoded graph
+	 */
+	public float getScore() {
+		float result = Float.NEGATIVE_INFINITY;
+		for (int type : grammar.goalTypes) {
+			result = Math.max(result, chart.get(0, nNodes - 1, type));
+		}
+		return result;
+	}
+
+	@Override
+	protected void prepare(int nNodes) {
+		if (chart == null || chart.getSize() < nNodes) {
+			int[] reach = new int[nNodes];
+			Arrays.fill(reach, nNodes - 1);
+			chart = new FloatChart(nNodes, reach, new int[nNodes], grammar.getNTypes());
+			backpointers = new IntChart(nNodes, grammar.getNTypes());
+		}
+	}
+
+	@Override
+	protected void fillSpan(int min, int max) {
+		Grammar g = grammar;
+		int nTypes = g.getNTypes();
+		int nBinary = g.binaryResult.length;
+		int nExtension = g.extensionResult.length;
+		int length = max - min;
+		float[] row = chart.getRow(min);
+		int[] back = backpointers.getRow(min);
+		int cell = length * nTypes;
+
+		for (int type = 0; type < nTypes; type++) {
+			row[cell + type] = Float.NEGATIVE_INFINITY;
+			back[cell + type] = 0;
+		}
+		for (int i = 0; i < g.axiomType.length; i++) {
+			if (g.axiomMinLength[i] <= length && length <= g.axiomMaxLength[i]) {
+				int k = cell + g.axiomType[i];
+				if (0.0f > row[k]) {
+					row[k] = 0.0f;
+					back[k] = 0;
+				}
+			}
+		}
+
+		float[] column = chart.getColumn(max);
+		int[] mids = getSplitPoints();
+		if (mids == null) {
+			for (int mid = min + 1; mid < max; mid++) {
+				fillSplit(row, column, back, cell, min, mid, max);
+			}
+		} else {
+			for (int j = getFirstSplitPoint(min, max), end = getEndSplitPoint(max); j < end; j++) {
+				fillSplit(row, column, back, cell, min, mids[j], max);
+			}
+		}
+
+		for (int i = 0; i < nExtension; i++) {
+			if (length - 1 >= g.extensionMinLength[i]) {
+				float score = g.extensionIsLeft[i] ? chart.get(min, max - 1, g.extensionSource[i]) : chart.get(min + 1, max, g.extensionSource[i]);
+				int k = cell + g.extensionResult[i];
+				if (score > row[k]) {
+					row[k] = score;
+					back[k] = nBinary + i + 1;
+				}
+			}
+		}
+
+		if (length > 0) {
+			boolean isMinMaxAdmissible = isAdmissible(min, max);
+			boolean isMaxMinAdmissible = isAdmissible(max, min);
+			for (int i = 0; i < g.coverResult.length; i++) {
+				if (!(g.coverIsMinMax[i] ? isMinMaxAdmissible : isMaxMinAdmissible)) {
+					continue;
+				}
+				float weight = g.coverIsMinMax[i] ? scores[min][max] : scores[max][min];
+				float score = row[cell + g.coverSource[i]] + weight;
+				int k = cell + g.coverResult[i];
+				if (score > row[k]) {
+					row[k] = score;
+					back[k] = nBinary + nExtension + i + 1;
+				}
+			}
+		}
+		chart.copyToColumn(min, max);
+	}
+
+	/**
+	 * Applies the binary rules with the specified split point. The left
+	 * antecedents are read from the row of {@code min}, the right antecedents
+	 * from the column of {@code max}.
+	 */
+	private void fillSplit(float[] row, float[] column, int[] back, int cell, int min, int mid, int max) {
+		Grammar g = grammar;
+		int[] binaryLeft = g.binaryLeft;
+		int[] binaryRight = g.binaryRight;
+		int[] binaryResult = g.binaryResult;
+		int nTypes = g.getNTypes();
+		int length1 = mid - min;
+		int cell1 = length1 * nTypes;
+		int cell2 = (max - mid) * nTypes;
+		int nRules = g.getNBinaryRules(length1);
+		for (int i = 0; i < nRules; i++) {
+			float score = row[cell1 + binaryLeft[i]] + column[cell2 + binaryRight[i]];
+			int k = cell + binaryResult[i];
+			if (score > row[k]) {
+				row[k] = score;
+				back[k] = mid << 8 | (i + 1);
+			}
+		}
+	}
+
+	/**
+	 * Reads off the edges of the best derivation of a goal item, sorted by
+	 * target and source.
+	 *
+	 * @return the number of edges
+	 */
+	private int getBestEdges() {
+		Grammar g = grammar;
+		int nBinary = g.binaryResult.length;
+		int nExtension = g.extensionResult.length;
+
+		int goal = g.goalTypes[0];
+		for (int type : g.goalTypes) {
+			if (chart.get(0, nNodes - 1, type) > chart.get(0, nNodes - 1, goal)) {
+				goal = type;
+			}
+		}
+
+		int nEdges = 0;
+		int top = 0;
+		top = push(top, goal, 0, nNodes - 1);
+		while (top > 0) {
+			int max = stack[--top];
+			int min = stack[--top];
+			int type = stack[--top];
+			int pointer = backpointers.get(min, max, type);
+			if (pointer == 0) {
+				continue;
+			}
+			int rule = (pointer & 0xff) - 1;
+			if (rule < nBinary) {
+				int mid = pointer >>> 8;
+				top = push(top, g.binaryLeft[rule], min, mid);
+				top = push(top, g.binaryRight[rule], mid, max);
+			} else if (rule < nBinary + nExtension) {
+				int i = rule - nBinary;
+				if (g.extensionIsLeft[i]) {
+					top = push(top, g.extensionSource[i], min, max - 1);
+				} else {
+					top = push(top, g.extensionSource[i], min + 1, max);
+				}
+			} else {
+				int i = rule - nBinary - nExtension;
+				if (nEdges == edges.length) {
+					edges = Arrays.copyOf(edges, 2 * nEdges);
+				}
+				if (g.coverIsMinMax[i]) {
+					edges[nEdges++] = (long) max * nNodes + min;
+				} else {
+					edges[nEdges++] = (long) min * nNodes + max;
+				}
+				top = push(top, g.coverSource[i], min, max);
+			}
+		}
+		Arrays.sort(edges, 0, nEdges);
+		return nEdges;
+	}
+
+	private int push(int top, int type, int min, int max) {
+		if (top + 3 > stack.length) {
+			stack = Arrays.copyOf(stack, 2 * stack.length);
+		}
+		stack[top++] = type;
+		stack[top++] = min;
+		stack[top++] = max;
+		return top;
+	}
+}
@@ -0,0 +1,418 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A deduction system for the tabulation of noncrossing acyclic digraphs.
+ *
+ * <p>
+ * Items have the form [<em>t</em>, <em>min</em>, <em>max</em>], where
+ * <em>t</em> is an item type and {@code (min, max)} is a span of nodes. The
+ * deduction system is specified by four kinds of rules:
+ * <ul>
+ * <li><em>Axioms</em> introduce items of a given type for all spans whose
+ * length falls into a given range.</li>
+ * <li><em>Binary rules</em> concatenate an item on {@code (min, mid)} and an
+ * item on {@code (mid, max)} into an item on {@code (min, max)}.</li>
+ * <li><em>Extension rules</em> concatenate an item on {@code (min, max - 1)}
+ * with the elementary graph on {@code (max - 1, max)} (or the elementary graph
+ * on {@code (min, min + 1)} with an item on {@code (min + 1, max)}).</li>
+ * <li><em>Cover rules</em> add the edge {@code min -> max} or the edge
+ * {@code max -> min} to an item on {@code (min, max)}.</li>
+ * </ul>
+ * Binary rules and extension rules may be restricted to antecedents of a
+ * minimal length. The goal items are the items on the full span with one of
+ * a given set of types.
+ *
+ * <p>
+ * Every rule has a unique index: binary rules come first, sorted by the
+ * minimal length of their left antecedent, followed by the extension rules
+ * and the cover rules. Rules of the same kind are otherwise kept in the
+ * order in which they were specified.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public final class Grammar {
+
+	/**
+	 * The deduction system used for counting noncrossing acyclic digraphs.
+	 * Every noncrossing acyclic digraph has exactly one derivation.
+	 */
+	public static final Grammar COUNTING = getCountingGrammar();
+
+	/**
+	 * The deduction system used for computing the coverage of a graph. Every
+	 * item is also an axiom, which means that every item can be derived
+	 * without covering any edge.
+	 */
+	public static final Grammar COVERAGE = getCoverageGrammar();
+
+	/**
+	 * The names of the item types.
+	 */
+	final String[] typeNames;
+
+	/**
+	 * The names of the rules.
+	 */
+	final String[] ruleNames;
+
+	final int[] axiomType;
+	final int[] axiomMinLength;
+	final int[] axiomMaxLength;
+
+	final int[] binaryLeft;
+	final int[] binaryRight;
+	final int[] binaryResult;
+	final int[] binaryMinLength;
+	/**
+	 * The number of binary rules that apply to a left antecedent of a given
+	 * length, for lengths up to the largest minimal length.
+	 */
+	private final int[] nBinaryRules;
+
+	final int[] extensionSource;
+	final int[] extensionResult;
+	final int[] extensionMinLength;
+	/**
+	 * Whether the source of an extension rule is on the left, that is, on the
+	 * span {@code (min, max - 1)}.
+	 */
+	final boolean[] extensionIsLeft;
+
+	final int[] coverSource;
+	final int[] coverResult;
+	/**
+	 * Whether a cover rule adds the edge {@code min -> max}; otherwise it adds
+	 * the edge {@code max -> min}.
+	 */
+	final boolean[] coverIsMinMax;
+
+	final int[] goalTypes;
+
+	/**
+	 * Whether the tabulation can be pruned to admissible edges.
+	 */
+	private final boolean isPrunable;
+
+	private Grammar(Specification specification) {
+		this.typeNames = specification.typeNames;
+		List<String> names = new ArrayList<String>();
+
+		int nAxioms = specification.axioms.size();
+		this.axiomType = new int[nAxioms];
+		this.axiomMinLength = new int[nAxioms];
+		this.axiomMaxLength = new int[nAxioms];
+		for (int i = 0; i < nAxioms; i++) {
+			int[] axiom = specification.axioms.get(i);
+			axiomType[i] = axiom[0];
+			axiomMinLength[i] = axiom[1];
+			axiomMaxLength[i] = axiom[2];
+		}
+
+		// Sort the binary rules by the minimal length of their left antecedent.
+		int nBinary = specification.binaryRules.size();
+		Integer[] order = new Integer[nBinary];
+		for (int i = 0; i < nBinary; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> Integer.compare(specification.binaryRules.get(i)[3], specification.binaryRules.get(j)[3]));
+		this.binaryLeft = new int[nBinary];
+		this.binaryRight = new int[nBinary];
+		this.binaryResult = new int[nBinary];
+		this.binaryMinLength = new int[nBinary];
+		for (int i = 0; i < nBinary; i++) {
+			int[] rule = specification.binaryRules.get(order[i]);
+			binaryLeft[i] = rule[0];
+			binaryRight[i] = rule[1];
+			binaryResult[i] = rule[2];
+			binaryMinLength[i] = rule[3];
+			names.add(specification.binaryNames.get(order[i]));
+		}
+		int maxMinLength = nBinary == 0 ? 0 : binaryMinLength[nBinary - 1];
+		this.nBinaryRules = new int[maxMinLength + 1];
+		for (int i = 0; i < nBinary; i++) {
+			for (int length = binaryMinLength[i]; length <= maxMinLength; length++) {
+				nBinaryRules[length]++;
+			}
+		}
+
+		int nExtension = specification.extensionRules.size();
+		this.extensionSource = new int[nExtension];
+		this.extensionResult = new int[nExtension];
+		this.extensionMinLength = new int[nExtension];
+		this.extensionIsLeft = new boolean[nExtension];
+		for (int i = 0; i < nExtension; i++) {
+			int[] rule = specification.extensionRules.get(i);
+			extensionSource[i] = rule[0];
+			extensionResult[i] = rule[1];
+			extensionMinLength[i] = rule[2];
+			extensionIsLeft[i] = rule[3] != 0;
+		}
+		names.addAll(specification.extensionNames);
+
+		int nCover = specification.coverRules.size();
+		this.coverSource = new int[nCover];
+		this.coverResult = new int[nCover];
+		this.coverIsMinMax = new boolean[nCover];
+		for (int i = 0; i < nCover; i++) {
+			int[] rule = specification.coverRules.get(i);
+			coverSource[i] = rule[0];
+			coverResult[i] = rule[1];
+			coverIsMinMax[i] = rule[2] != 0;
+		}
+		names.addAll(specification.coverNames);
+
+		this.ruleNames = names.toArray(new String[names.size()]);
+		this.goalTypes = Arrays.copyOf(specification.goalTypes, specification.goalTypes.length);
+		this.isPrunable = computeIsPrunable();
+	}
+
+	private boolean computeIsPrunable() {
+		for (boolean isLeft : extensionIsLeft) {
+			if (!isLeft) {
+				return false;
+			}
+		}
+		for (int right : binaryRight) {
+			for (int type : axiomType) {
+				if (type == right) {
+					return false;
+				}
+			}
+			for (int type : binaryResult) {
+				if (type == right) {
+					return false;
+				}
+			}
+			for (int type : extensionResult) {
+				if (type == right) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Tests whether tabulations of this grammar can be restricted to a set of
+	 * admissible edges (see {@link Tabulation#setFilter(GraphFilter)}). This
+	 * is the case if the right antecedent of every binary rule can only be
+	 * derived by a cover rule, and if every extension rule has its source on
+	 * the left. Then a span {@code (mid, max)} can only be the right
+	 * antecedent of a binary rule if there is an admissible edge between
+	 * {@code mid} and {@code max}.
+	 *
+	 * @return {@code true} if tabulations of this grammar can be restricted to
+	 * a set of admissible edges
+	 */
+	public boolean isPrunable() {
+		return isPrunable;
+	}
+
+	/**
+	 * Returns the number of binary rules that apply to a left antecedent of
+	 * the specified length. These are the first binary rules.
+	 *
+	 * @param length the length of the left antecedent
+	 * @return the number of binary rules that apply
+	 */
+	int getNBinaryRules(int length) {
+		return length < nBinaryRules.length ? nBinaryRules[length] : binaryMinLength.length;
+	}
+
+	/**
+	 * Returns the number of item types of this grammar.
+	 *
+	 * @return the number of item types of this grammar
+	 */
+	public int getNTypes() {
+		return typeNames.length;
+	}
+
+	/**
+	 * Returns the name of the specified item type.
+	 *
+	 * @param type an item type
+	 * @return the name of the specified item type
+	 */
+	public String getTypeName(int type) {
+		return typeNames[type];
+	}
+
+	/**
+	 * Returns the number of rules of this grammar, not counting axioms.
+	 *
+	 * @return the number of rules of this grammar
+	 */
+	public int getNRules() {
+		return ruleNames.length;
+	}
+
+	/**
+	 * Returns the name of the specified rule.
+	 *
+	 * @param rule a rule index
+	 * @return the name of the specified rule
+	 */
+	public String getRuleName(int rule) {
+		return ruleNames[rule];
+	}
+
+	private static Grammar getCountingGrammar() {
+		Specification s = new Specification("MinMaxEdge", "MaxMinEdge", "MinMaxPath", "MaxMinPath", "MixConnected", "NonConnected");
+
+		s.addAxiom("MixConnected", 0, 0);
+
+		s.addBinaryRule("01", "MinMaxEdge", "MinMaxEdge", "MinMaxPath", 1);
+		s.addBinaryRule("02", "MinMaxEdge", "MaxMinEdge", "MixConnected", 1);
+		s.addBinaryRule("03", "MaxMinEdge", "MinMaxEdge", "MixConnected", 1);
+		s.addBinaryRule("04", "MaxMinEdge", "MaxMinEdge", "MaxMinPath", 1);
+		s.addBinaryRule("05", "MinMaxPath", "MinMaxEdge", "MinMaxPath", 1);
+		s.addBinaryRule("06", "MinMaxPath", "MaxMinEdge", "MixConnected", 1);
+		s.addBinaryRule("07", "MaxMinPath", "MinMaxEdge", "MixConnected", 1);
+		s.addBinaryRule("08", "MaxMinPath", "MaxMinEdge", "MaxMinPath", 1);
+		s.addBinaryRule("09", "MixConnected", "MinMaxEdge", "MixConnected", 1);
+		s.addBinaryRule("09a", "NonConnected", "MinMaxEdge", "NonConnected", 1);
+		s.addBinaryRule("10", "MixConnected", "MaxMinEdge", "MixConnected", 1);
+		s.addBinaryRule("10a", "NonConnected", "MaxMinEdge", "NonConnected", 1);
+
+		s.addExtensionRule("11", "MinMaxEdge", true, "NonConnected", 0);
+		s.addExtensionRule("12", "MaxMinEdge", true, "NonConnected", 0);
+		s.addExtensionRule("13", "MinMaxPath", true, "NonConnected", 0);
+		s.addExtensionRule("14", "MaxMinPath", true, "NonConnected", 0);
+		s.addExtensionRule("15", "MixConnected", true, "NonConnected", 0);
+		s.addExtensionRule("15a", "NonConnected", true, "NonConnected", 0);
+
+		s.addCoverRule("16", "MinMaxPath", "MinMaxEdge", true);
+		s.addCoverRule("17", "MaxMinPath", "MaxMinEdge", false);
+		s.addCoverRule("18", "MixConnected", "MinMaxEdge", true);
+		s.addCoverRule("18a", "NonConnected", "MinMaxEdge", true);
+		s.addCoverRule("19", "MixConnected", "MaxMinEdge", false);
+		s.addCoverRule("19a", "NonConnected", "MaxMinEdge", false);
+
+		s.setGoalTypes("MinMaxEdge", "MaxMinEdge", "MinMaxPath", "MaxMinPath", "MixConnected", "NonConnected");
+
+		return new Grammar(s);
+	}
+
+	private static Grammar getCoverageGrammar() {
+		Specification s = new Specification("MinMaxCovered", "MaxMinCovered", "MinMaxConnected", "MaxMinConnected", "MixConnected", "Unconnected");
+
+		for (String typeName : s.typeNames) {
+			s.addAxiom(typeName, 0, Integer.MAX_VALUE);
+		}
+
+		// Concatenate two edge-covered graphs.
+		s.addBinaryRule("01", "MinMaxCovered", "MinMaxCovered", "MinMaxConnected", 1);
+		s.addBinaryRule("02", "MaxMinCovered", "MaxMinCovered", "MaxMinConnected", 1);
+		s.addBinaryRule("03", "MinMaxCovered", "MaxMinCovered", "MixConnected", 1);
+		s.addBinaryRule("04", "MaxMinCovered", "MinMaxCovered", "MixConnected", 1);
+
+		// Concatenate a connected graph and an edge-covered graph.
+		s.addBinaryRule("09", "MinMaxConnected", "MinMaxCovered", "MinMaxConnected", 2);
+		s.addBinaryRule("10", "MinMaxConnected", "MaxMinCovered", "MixConnected", 2);
+		s.addBinaryRule("11", "MaxMinConnected", "MinMaxCovered", "MixConnected", 2);
+		s.addBinaryRule("12", "MaxMinConnected", "MaxMinCovered", "MaxMinConnected", 2);
+		s.addBinaryRule("13", "MixConnected", "MinMaxCovered", "MixConnected", 2);
+		s.addBinaryRule("14", "MixConnected", "MaxMinCovered", "MixConnected", 2);
+
+		// Concatenate to an unconnected graph.
+		s.addBinaryRule("18", "Unconnected", "MinMaxCovered", "Unconnected", 2);
+		s.addBinaryRule("19", "Unconnected", "MaxMinCovered", "Unconnected", 2);
+
+		// Concatenate an edge-covered graph and the elementary graph.
+		s.addExtensionRule("05", "MinMaxCovered", true, "Unconnected", 1);
+		s.addExtensionRule("06", "MinMaxCovered", false, "Unconnected", 1);
+		s.addExtensionRule("07", "MaxMinCovered", true, "Unconnected", 1);
+		s.addExtensionRule("08", "MaxMinCovered", false, "Unconnected", 1);
+
+		// Concatenate a connected graph and the elementary graph.
+		s.addExtensionRule("15", "MinMaxConnected", true, "Unconnected", 2);
+		s.addExtensionRule("16", "MaxMinConnected", true, "Unconnected", 2);
+		s.addExtensionRule("17", "MixConnected", true, "Unconnected", 2);
+
+		// Concatenate an unconnected graph and the elementary graph.
+		s.addExtensionRule("20", "Unconnected", true, "Unconnected", 1);
+
+		// Cover a graph.
+		s.addCoverRule("21", "MinMaxConnected", "MinMaxCovered", true);
+		s.addCoverRule("22", "MixConnected", "MinMaxCovered", true);
+		s.addCoverRule("23", "Unconnected", "MinMaxCovered", true);
+		s.addCoverRule("24", "MaxMinConnected", "MaxMinCovered", false);
+		s.addCoverRule("25", "MixConnected", "MaxMinCovered", false);
+		s.addCoverRule("26", "Unconnected", "MaxMinCovered", false);
+
+		s.setGoalTypes("MinMaxCovered", "MaxMinCovered", "MinMaxConnected", "MaxMinConnected", "MixConnected", "Unconnected");
+
+		return new Grammar(s);
+	}
+
+	/**
+	 * The specification of a grammar, collected rule by rule.
+	 */
+	private static final class Specification {
+
+		private final String[] typeNames;
+
+		private final List<int[]> axioms = new ArrayList<int[]>();
+
+		private final List<int[]> binaryRules = new ArrayList<int[]>();
+
+		private final List<String> binaryNames = new ArrayList<String>();
+
+		private final List<int[]> extensionRules = new ArrayList<int[]>();
+
+		private final List<String> extensionNames = new ArrayList<String>();
+
+		private final List<int[]> coverRules = new ArrayList<int[]>();
+
+		private final List<String> coverNames = new ArrayList<String>();
+
+		private int[] goalTypes = new int[0];
+
+		Specification(String... typeNames) {
+			this.typeNames = typeNames;
+		}
+
+		private int getType(String typeName) {
+			for (int type = 0; type < typeNames.length; type++) {
+				if (typeNames[type].equals(typeName)) {
+					return type;
+				}
+			}
+			throw new IllegalArgumentException("Unknown item type: " + typeName);
+		}
+
+		void addAxiom(String type, int minLength, int maxLength) {
+			axioms.add(new int[]{getType(type), minLength, maxLength});
+		}
+
+		void addBinaryRule(String name, String left, String right, String result, int minLength) {
+			binaryRules.add(new int[]{getType(left), getType(right), getType(result), minLength});
+			binaryNames.add(name);
+		}
+
+		void addExtensionRule(String name, String source, boolean isLeft, String result, int minLength) {
+			extensionRules.add(new int[]{getType(source), getType(result), minLength, isLeft ? 1 : 0});
+			extensionNames.add(name);
+		}
+
+		void addCoverRule(String name, String source, String result, boolean isMinMax) {
+			coverRules.add(new int[]{getType(source), getType(result), isMinMax ? 1 : 0});
+			coverNames.add(name);
+		}
+
+		void setGoalTypes(String... types) {
+			goalTypes = new int[types.length];
+			for (int i = 0; i < types.length; i++) {
+				goalTypes[i] = getType(types[i]);
+			}
+		}
+	}
+}
@@ -4,6 +4,8 @@
 package se.liu.ida.nlp.ncdag;
 
 /**
+ * A set of admissible edges. A filter can be used to restrict a
+ * {@link Tabulation} to graphs whose edges are all admissible.
  *
  * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
  */
@@ -11,6 +13,22 @@ public class GraphFilter {
 
 	private final boolean[][] hasEdge;
 
+	/**
+	 * Construct a filter for the specified number of nodes that admits no
+	 * edges.
+	 *
+	 * @param nNodes the number of nodes
+	 */
+	public GraphFilter(int nNodes) {
+		this.hasEdge = new boolean[nNodes][nNodes];
+	}
+
+	/**
+	 * Construct a filter that admits exactly the edges of the specified
+	 * graph.
+	 *
+	 * @param graph the graph
+	 */
 	public GraphFilter(Graph graph) {
 		int nNodes = graph.getNNodes();
 		this.hasEdge = new boolean[nNodes][nNodes];
@@ -19,7 +37,75 @@ public class GraphFilter {
 		}
 	}
 
+	/**
+	 * Construct a filter that admits exactly the edges of the specified
+	 * graph.
+	 *
+	 * @param graph the graph
+	 */
+	public GraphFilter(CompactGraph graph) {
+		int nNodes = graph.getNNodes();
+		this.hasEdge = new boolean[nNodes][nNodes];
+		for (int src = 0; src < nNodes; src++) {
+			for (int i = 0, n = graph.getOutdegree(src); i < n; i++) {
+				hasEdge[src][graph.getSuccessor(src, i)] = true;
+			}
+		}
+	}
+
+	/**
+	 * Construct a filter that admits those edges whose scores are greater than
+	 * or equal to the specified threshold, for example the scores of a
+	 * first-stage edge classifier. Loops are never admitted.
+	 *
+	 * @param scores the scores of the edges, indexed by source and target
+	 * @param nNodes the number of nodes
+	 * @param threshold the threshold
+	 */
+	public GraphFilter(float[][] scores, int nNodes, float threshold) {
+		this.hasEdge = new boolean[nNodes][nNodes];
+		for (int src = 0; src < nNodes; src++) {
+			for (int tgt = 0; tgt < nNodes; tgt++) {
+				hasEdge[src][tgt] = src != tgt && scores[src][tgt] >= threshold;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes of this filter.
+	 *
+	 * @return the number of nodes of this filter
+	 */
+	public int getNNodes() {
+		return hasEdge.length;
+	}
+
 	public boolean isAdmissible(int src, int tgt) {
 		return hasEdge[src][tgt];
 	}
+
+	/**
+	 * Specifies whether the specified edge is admissible. This allows a
+	 * filter to be reused for several graphs.
+	 *
+	 * @param src the source of the edge
+	 * @param tgt the target of the edge
+	 * @param isAdmissible {@code true} if the edge should be admissible
+	 */
+	public void setAdmissible(int src, int tgt, boolean isAdmissible) {
+		hasEdge[src][tgt] = isAdmissible;
+	}
+
+	/**
+	 * Tests whether there is an admissible edge between the specified nodes,
+	 * in either direction.
+	 *
+	 * @param node1 the first node
+	 * @param node2 the second node
+	 * @return {@code true} if there is an admissible edge between the
+	 * specified nodes
+	 */
+	public boolean isConnected(int node1, int node2) {
+		return hasEdge[node1][node2] || hasEdge[node2][node1];
+	}
 }
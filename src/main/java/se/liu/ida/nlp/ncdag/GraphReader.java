@@ -19,6 +19,12 @@ import java.util.List;
  */
 public class GraphReader extends ParagraphReader {
 
+	/**
+	 * The table in which the strings of the graphs are interned, or
+	 * {@code null}.
+	 */
+	private SymbolTable symbols;
+
 	/**
 	 * Create a graph reader, using the default input-buffer size.
 	 *
@@ -54,6 +60,19 @@ public class GraphReader extends ParagraphReader {
 		super(fileName);
 	}
 
+	/**
+	 * Sets the table in which the forms, lemmas, part-of-speech tags and edge
+	 * labels of the graphs read are interned. Readers that share a table
+	 * share the strings of the graphs they read, and the IDs of the strings
+	 * can be obtained from the table.
+	 *
+	 * @param symbols the table, or {@code null} if the strings should not be
+	 * interned
+	 */
+	public void setSymbolTable(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
 	/**
 	 * Reads a single graph.
 	 *
@@ -85,9 +104,9 @@ public class GraphReader extends ParagraphReader {
 				// Enforce valid values for the PRED column.
 				assert tokens[5].equals("+") || tokens[5].equals("-");
 
-				String form = tokens[1];
-				String lemma = tokens[2];
-				String pos = tokens[3];
+				String form = intern(tokens[1]);
+				String lemma = intern(tokens[2]);
+				String pos = intern(tokens[3]);
 				boolean isTop = tokens[4].equals("+");
 				boolean isPred = tokens[5].equals("+");
 
@@ -110,7 +129,7 @@ public class GraphReader extends ParagraphReader {
 
 				for (int i = 6; i < tokens.length; i++) {
 					if (!tokens[i].equals(Constants.UNDEFINED)) {
-						graph.addEdge(predicates.get(i - 6), id, tokens[i]);
+						graph.addEdge(predicates.get(i - 6), id, intern(tokens[i]));
 					}
 				}
 				id++;
@@ -124,4 +143,8 @@ public class GraphReader extends ParagraphReader {
 			return graph;
 		}
 	}
+
+	private String intern(String string) {
+		return symbols == null ? string : symbols.intern(string);
+	}
 }
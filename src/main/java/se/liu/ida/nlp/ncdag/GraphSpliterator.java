@@ -0,0 +1,189 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A spliterator over the graphs in a range of bytes of a file. The range is
+ * split at the blank lines between graphs, and each part is parsed by its own
+ * {@link MappedGraphReader}, so that a parallel stream reads a large file on
+ * several threads. A spliterator does not split once it has started to
+ * parse, nor into parts smaller than {@value #MIN_SPLIT_SIZE} bytes.
+ *
+ * <p>
+ * The spliterator reports the graphs in the order of the file. Callers that
+ * do not need this order should use {@link Stream#unordered()}, which
+ * allows a parallel stream to process the parts independently.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class GraphSpliterator implements Spliterator<Graph> {
+
+	/**
+	 * The minimal size of a part, in bytes.
+	 */
+	public static final int MIN_SPLIT_SIZE = 1 << 20;
+
+	/**
+	 * The size of the buffer used to look for the boundary between graphs.
+	 */
+	private static final int SCAN_SIZE = 1 << 12;
+
+	private final FileChannel channel;
+
+	/**
+	 * The position of the first byte of the range.
+	 */
+	private long start;
+
+	/**
+	 * The position after the last byte of the range.
+	 */
+	private final long end;
+
+	/**
+	 * The reader for the range, or {@code null} if parsing has not started.
+	 */
+	private MappedGraphReader reader;
+
+	/**
+	 * Create a spliterator over the graphs in the specified range of bytes of
+	 * the specified file. The range should start and end at the boundary
+	 * between two graphs. The spliterator does not close the channel.
+	 *
+	 * @param channel the file
+	 * @param start the position of the first byte of the range
+	 * @param end the position after the last byte of the range
+	 */
+	public GraphSpliterator(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Returns a stream of the graphs in the specified file. Closing the stream
+	 * closes the file.
+	 *
+	 * @param fileName the name of the file
+	 * @param isParallel {@code true} if the stream should be parallel
+	 * @return a stream of the graphs in the specified file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static Stream<Graph> stream(String fileName, boolean isParallel) throws IOException {
+		return stream(Paths.get(fileName), isParallel);
+	}
+
+	/**
+	 * Returns a stream of the graphs in the specified file. Closing the stream
+	 * closes the file.
+	 *
+	 * @param path the file
+	 * @param isParallel {@code true} if the stream should be parallel
+	 * @return a stream of the graphs in the specified file
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static Stream<Graph> stream(Path path, boolean isParallel) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		Spliterator<Graph> spliterator = new GraphSpliterator(channel, 0L, channel.size());
+		return StreamSupport.stream(spliterator, isParallel).onClose(() -> {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Graph> action) {
+		try {
+			if (reader == null) {
+				reader = new MappedGraphReader(channel, start, end);
+			}
+			Graph graph = reader.readGraph();
+			if (graph == null) {
+				return false;
+			} else {
+				action.accept(graph);
+				return true;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public Spliterator<Graph> trySplit() {
+		if (reader != null || end - start < 2 * MIN_SPLIT_SIZE) {
+			return null;
+		}
+		try {
+			long mid = findBoundary(start + (end - start) / 2);
+			if (mid < 0 || mid - start < MIN_SPLIT_SIZE) {
+				return null;
+			}
+			GraphSpliterator prefix = new GraphSpliterator(channel, start, mid);
+			start = mid;
+			return prefix;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the position after the first blank line at or after the
+	 * specified position, or -1 if there is no such line in the range.
+	 */
+	private long findBoundary(long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+		boolean isLineStart = false;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(SCAN_SIZE, end - position));
+			int n = channel.read(buffer, position);
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n') {
+					if (isLineStart) {
+						return position + i + 1;
+					}
+					isLineStart = true;
+				} else if (b != '\r') {
+					isLineStart = false;
+				}
+			}
+			position += n;
+		}
+		return -1L;
+	}
+
+	/**
+	 * Returns the number of bytes in the range, as an estimate of the number
+	 * of graphs relative to other parts of the same file.
+	 */
+	@Override
+	public long estimateSize() {
+		return end - start;
+	}
+
+	@Override
+	public int characteristics() {
+		return ORDERED | NONNULL | IMMUTABLE;
+	}
+}
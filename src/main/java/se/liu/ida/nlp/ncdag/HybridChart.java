@@ -0,0 +1,170 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.math.BigInteger;
+
+/**
+ * A chart of non-negative integers that stores primitive {@code long} values
+ * and promotes a cell to a {@link BigInteger} only when its value overflows.
+ *
+ * <p>
+ * Different rows of the chart may be updated concurrently, as long as no
+ * cell is read while it is being updated.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class HybridChart implements Chart {
+
+	private final long[][] chart;
+
+	/**
+	 * The values of the promoted cells; {@code null} for cells that have not
+	 * been promoted. The rows are allocated on demand.
+	 */
+	private final BigInteger[][] promoted;
+
+	public HybridChart(int size) {
+		this.chart = new long[size][];
+		for (int i = 0; i < size; i++) {
+			chart[i] = new long[size - i];
+		}
+		this.promoted = new BigInteger[size][];
+	}
+
+	/**
+	 * Construct a chart that holds, for each left endpoint {@code min}, only
+	 * the spans whose right endpoint is at most {@code reach[min]}.
+	 *
+	 * @param size the number of nodes
+	 * @param reach the largest right endpoint, indexed by left endpoint
+	 */
+	public HybridChart(int size, int[] reach) {
+		this.chart = new long[size][];
+		for (int i = 0; i < size; i++) {
+			chart[i] = new long[reach[i] - i + 1];
+		}
+		this.promoted = new BigInteger[size][];
+	}
+
+	@Override
+	public int getSize() {
+		return chart.length;
+	}
+
+	/**
+	 * Tests whether the specified cell has been promoted to a
+	 * {@link BigInteger}.
+	 *
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return {@code true} if the specified cell has been promoted
+	 */
+	public boolean isPromoted(int min, int max) {
+		BigInteger[] row = promoted[min];
+		return row != null && row[max - min] != null;
+	}
+
+	@Override
+	public BigInteger getBigInteger(int min, int max) {
+		BigInteger[] row = promoted[min];
+		if (row != null && row[max - min] != null) {
+			return row[max - min];
+		} else {
+			return BigInteger.valueOf(chart[min][max - min]);
+		}
+	}
+
+	public void set(int min, int max, long value) {
+		BigInteger[] row = promoted[min];
+		if (row != null) {
+			row[max - min] = null;
+		}
+		chart[min][max - min] = value;
+	}
+
+	/**
+	 * Adds the specified value to the specified cell of this chart.
+	 *
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @param value the value to be added
+	 */
+	public void add(int min, int max, long value) {
+		if (!isPromoted(min, max)) {
+			try {
+				chart[min][max - min] = Math.addExact(chart[min][max - min], value);
+				return;
+			} catch (ArithmeticException e) {
+				// Fall through to the promoted case.
+			}
+		}
+		add(min, max, BigInteger.valueOf(value));
+	}
+
+	/**
+	 * Adds the value of a cell of the specified chart to the specified cell of
+	 * this chart.
+	 *
+	 * @param min the left endpoint of the target span
+	 * @param max the right endpoint of the target span
+	 * @param chart1 the source chart
+	 * @param min1 the left endpoint of the source span
+	 * @param max1 the right endpoint of the source span
+	 */
+	public void add(int min, int max, HybridChart chart1, int min1, int max1) {
+		if (!isPromoted(min, max) && !chart1.isPromoted(min1, max1)) {
+			long value1 = chart1.chart[min1][max1 - min1];
+			try {
+				chart[min][max - min] = Math.addExact(chart[min][max - min], value1);
+				return;
+			} catch (ArithmeticException e) {
+				// Fall through to the promoted case.
+			}
+		}
+		add(min, max, chart1.getBigInteger(min1, max1));
+	}
+
+	/**
+	 * Adds the product of the values of two cells of the specified charts to
+	 * the specified cell of this chart.
+	 *
+	 * @param min the left endpoint of the target span
+	 * @param max the right endpoint of the target span
+	 * @param chart1 the chart for the first factor
+	 * @param min1 the left endpoint of the span for the first factor
+	 * @param max1 the right endpoint of the span for the first factor
+	 * @param chart2 the chart for the second factor
+	 * @param min2 the left endpoint of the span for the second factor
+	 * @param max2 the right endpoint of the span for the second factor
+	 */
+	public void addProduct(int min, int max, HybridChart chart1, int min1, int max1, HybridChart chart2, int min2, int max2) {
+		if (!isPromoted(min, max) && !chart1.isPromoted(min1, max1) && !chart2.isPromoted(min2, max2)) {
+			long value1 = chart1.chart[min1][max1 - min1];
+			long value2 = chart2.chart[min2][max2 - min2];
+			if (value1 == 0L || value2 == 0L) {
+				return;
+			}
+			try {
+				chart[min][max - min] = Math.addExact(chart[min][max - min], Math.multiplyExact(value1, value2));
+				return;
+			} catch (ArithmeticException e) {
+				// Fall through to the promoted case.
+			}
+		}
+		add(min, max, chart1.getBigInteger(min1, max1).multiply(chart2.getBigInteger(min2, max2)));
+	}
+
+	/**
+	 * Adds the specified value to the specified cell, promoting the cell.
+	 */
+	private void add(int min, int max, BigInteger value) {
+		BigInteger[] row = promoted[min];
+		if (row == null) {
+			row = new BigInteger[chart[min].length];
+			promoted[min] = row;
+		}
+		row[max - min] = getBigInteger(min, max).add(value);
+	}
+}
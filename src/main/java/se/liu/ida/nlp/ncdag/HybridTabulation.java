@@ -0,0 +1,118 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.math.BigInteger;
+
+/**
+ * A tabulation that counts the derivations of each item exactly, using
+ * {@link HybridChart}s.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class HybridTabulation extends Tabulation {
+
+	private HybridChart[] charts;
+
+	/**
+	 * Construct a new tabulation for the specified grammar.
+	 *
+	 * @param grammar the grammar
+	 */
+	public HybridTabulation(Grammar grammar) {
+		super(grammar);
+	}
+
+	@Override
+	protected void prepare(int nNodes) {
+		charts = new HybridChart[grammar.getNTypes()];
+		for (int type = 0; type < charts.length; type++) {
+			charts[type] = new HybridChart(nNodes, getReach());
+		}
+	}
+
+	@Override
+	protected void fillSpan(int min, int max) {
+		Grammar g = grammar;
+		HybridChart[] charts = this.charts;
+		int length = max - min;
+
+		for (int i = 0; i < g.axiomType.length; i++) {
+			if (g.axiomMinLength[i] <= length && length <= g.axiomMaxLength[i]) {
+				charts[g.axiomType[i]].add(min, max, 1L);
+			}
+		}
+
+		int[] mids = getSplitPoints();
+		if (mids == null) {
+			for (int mid = min + 1; mid < max; mid++) {
+				fillSplit(min, mid, max);
+			}
+		} else {
+			for (int j = getFirstSplitPoint(min, max), end = getEndSplitPoint(max); j < end; j++) {
+				fillSplit(min, mids[j], max);
+			}
+		}
+
+		for (int i = 0; i < g.extensionResult.length; i++) {
+			if (length - 1 >= g.extensionMinLength[i]) {
+				if (g.extensionIsLeft[i]) {
+					charts[g.extensionResult[i]].add(min, max, charts[g.extensionSource[i]], min, max - 1);
+				} else {
+					charts[g.extensionResult[i]].add(min, max, charts[g.extensionSource[i]], min + 1, max);
+				}
+			}
+		}
+
+		if (length > 0) {
+			boolean isMinMaxAdmissible = isAdmissible(min, max);
+			boolean isMaxMinAdmissible = isAdmissible(max, min);
+			for (int i = 0; i < g.coverResult.length; i++) {
+				if (g.coverIsMinMax[i] ? isMinMaxAdmissible : isMaxMinAdmissible) {
+					charts[g.coverResult[i]].add(min, max, charts[g.coverSource[i]], min, max);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the binary rules with the specified split point.
+	 */
+	private void fillSplit(int min, int mid, int max) {
+		Grammar g = grammar;
+		HybridChart[] charts = this.charts;
+		int[] binaryLeft = g.binaryLeft;
+		int[] binaryRight = g.binaryRight;
+		int[] binaryResult = g.binaryResult;
+		int nRules = g.getNBinaryRules(mid - min);
+		for (int i = 0; i < nRules; i++) {
+			charts[binaryResult[i]].addProduct(min, max, charts[binaryLeft[i]], min, mid, charts[binaryRight[i]], mid, max);
+		}
+	}
+
+	/**
+	 * Returns the number of derivations of the specified item.
+	 *
+	 * @param type the item type
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return the number of derivations of the specified item
+	 */
+	public BigInteger get(int type, int min, int max) {
+		return charts[type].getBigInteger(min, max);
+	}
+
+	/**
+	 * Returns the total number of derivations of the goal items.
+	 *
+	 * @return the total number of derivations of the goal items
+	 */
+	public BigInteger getGoal() {
+		BigInteger result = BigInteger.ZERO;
+		for (int type : grammar.goalTypes) {
+			result = result.add(charts[type].getBigInteger(0, nNodes - 1));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+/**
+ * Compute edge marginals over all noncrossing acyclic digraphs under an
+ * edge-factored model. The weight of a graph is the exponential of the sum of
+ * the scores of its edges; the marginal of an edge is the total weight of the
+ * graphs that contain it, divided by the total weight of all graphs.
+ *
+ * <p>
+ * The computation runs an inside pass and an outside pass over the items of
+ * {@link Grammar#COUNTING}, which has exactly one derivation per graph. To
+ * avoid a logarithm and an exponential per rule instance, the inside value of
+ * an item is stored as a log-space scale that is shared by all items on the
+ * same span, times a linear value of at most one. Sums over split points are
+ * computed relative to the largest scale, in the manner of the log-sum-exp
+ * trick. Instead of outside values, the outside pass propagates the marginals
+ * of the items from longer to shorter spans: every item passes its marginal
+ * on to the antecedents of its rule instances, in proportion to their share
+ * of its inside value. All values of this pass lie between zero and one.
+ * One consequence of the shared scale is that an item whose inside value is
+ * less than that of the best item on the same span by a factor of more than
+ * about <em>e</em><sup>700</sup> is treated as having inside value zero. For
+ * edge scores of moderate magnitude, this does not happen.
+ *
+ * <p>
+ * The charts are kept between calls and only grow, so computing the
+ * marginals for a sequence of sentences does not allocate. An instance must
+ * not be used by more than one thread at a time; use one instance per thread
+ * instead.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class InsideOutside extends Tabulation {
+
+	private static final Semiring.OfDouble LOG = Semiring.OfDouble.LOG;
+
+	/**
+	 * The scaled inside values of the items; each cell holds one value per
+	 * item type.
+	 */
+	private DoubleChart inside;
+
+	/**
+	 * The logarithms of the scales of the inside values, one per span.
+	 */
+	private DoubleChart scales;
+
+	/**
+	 * The marginals of the items; each cell holds one value per item type.
+	 */
+	private DoubleChart marginals;
+
+	/**
+	 * The edge scores of the current sentence.
+	 */
+	private double[][] scores;
+
+	/**
+	 * Workspace with one value per item type.
+	 */
+	private final double[] values;
+
+	/**
+	 * Construct a new instance.
+	 */
+	public InsideOutside() {
+		this(Grammar.COUNTING);
+	}
+
+	/**
+	 * Construct a new instance for the specified grammar. The grammar should
+	 * have exactly one derivation for every graph of interest, and no cover
+	 * rule should have the result of another cover rule as its antecedent.
+	 *
+	 * @param grammar the grammar
+	 */
+	public InsideOutside(Grammar grammar) {
+		super(grammar);
+		this.values = new double[grammar.getNTypes()];
+	}
+
+	/**
+	 * Computes the edge marginals for a sentence with the specified number of
+	 * nodes.
+	 *
+	 * @param nNodes the number of nodes
+	 * @param scores the scores of the edges, indexed by source and target
+	 * @param edgeMarginals an array that receives the marginals of the edges,
+	 * indexed by source and target
+	 * @return the logarithm of the partition function, that is, of the total
+	 * weight of all graphs
+	 */
+	public double computeMarginals(int nNodes, double[][] scores, double[][] edgeMarginals) {
+		this.scores = scores;
+		fill(nNodes);
+		double logZ = getLogPartition();
+		for (int i = 0; i < nNodes; i++) {
+			for (int j = 0; j < nNodes; j++) {
+				edgeMarginals[i][j] = 0.0;
+			}
+		}
+		fillOutside(logZ, edgeMarginals);
+		this.scores = null;
+		return logZ;
+	}
+
+	/**
+	 * Returns the logarithm of the partition function of the most recent
+	 * sentence.
+	 *
+	 * @return the logarithm of the partition function
+	 */
+	public double getLogPartition() {
+		double result = LOG.zero();
+		for (int type : grammar.goalTypes) {
+			result = LOG.add(result, getLogInside(type, 0, nNodes - 1));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the logarithm of the inside value of the specified item.
+	 *
+	 * @param type the item type
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return the logarithm of the inside value of the specified item
+	 */
+	public double getLogInside(int type, int min, int max) {
+		return scales.get(min, max) + Math.log(inside.get(min, max, type));
+	}
+
+	/**
+	 * Returns the marginal of the specified item in the most recent sentence,
+	 * that is, the share of the total weight of the derivations that contain
+	 * the item.
+	 *
+	 * @param type the item type
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return the marginal of the specified item
+	 */
+	public double getMarginal(int type, int min, int max) {
+		return marginals.get(min, max, type);
+	}
+
+	@Override
+	protected void prepare(int nNodes) {
+		if (inside == null || inside.getSize() < nNodes) {
+			inside = new DoubleChart(nNodes, grammar.getNTypes());
+			scales = new DoubleChart(nNodes);
+			marginals = new DoubleChart(nNodes, grammar.getNTypes());
+		}
+	}
+
+	@Override
+	protected void fillSpan(int min, int max) {
+		Grammar g = grammar;
+		int nTypes = g.getNTypes();
+		int length = max - min;
+		double[] row = inside.getRow(min);
+		int cell = length * nTypes;
+		double[] logValues = values;
+
+		// The largest product of the scales of two antecedents.
+		int[] mids = getSplitPoints();
+		int from = mids == null ? min + 1 : getFirstSplitPoint(min, max);
+		int to = mids == null ? max : getEndSplitPoint(max);
+		double scale = Double.NEGATIVE_INFINITY;
+		for (int j = from; j < to; j++) {
+			int mid = mids == null ? j : mids[j];
+			scale = Math.max(scale, scales.get(min, mid) + scales.get(mid, max));
+		}
+
+		for (int type = 0; type < nTypes; type++) {
+			row[cell + type] = 0.0;
+		}
+		if (scale > Double.NEGATIVE_INFINITY) {
+			int[] binaryLeft = g.binaryLeft;
+			int[] binaryRight = g.binaryRight;
+			int[] binaryResult = g.binaryResult;
+			for (int j = from; j < to; j++) {
+				int mid = mids == null ? j : mids[j];
+				double factor = Math.exp(scales.get(min, mid) + scales.get(mid, max) - scale);
+				if (factor == 0.0) {
+					continue;
+				}
+				int length1 = mid - min;
+				int cell1 = length1 * nTypes;
+				double[] row2 = inside.getRow(mid);
+				int cell2 = (max - mid) * nTypes;
+				int nRules = g.getNBinaryRules(length1);
+				for (int i = 0; i < nRules; i++) {
+					row[cell + binaryResult[i]] += factor * row[cell1 + binaryLeft[i]] * row2[cell2 + binaryRight[i]];
+				}
+			}
+		}
+
+		// The remaining rules are applied in log space.
+		for (int type = 0; type < nTypes; type++) {
+			logValues[type] = scale + Math.log(row[cell + type]);
+		}
+		for (int i = 0; i < g.axiomType.length; i++) {
+			if (g.axiomMinLength[i] <= length && length <= g.axiomMaxLength[i]) {
+				int k = g.axiomType[i];
+				logValues[k] = LOG.add(logValues[k], LOG.one());
+			}
+		}
+		for (int i = 0; i < g.extensionResult.length; i++) {
+			if (length - 1 >= g.extensionMinLength[i]) {
+				double value = g.extensionIsLeft[i] ? getLogInside(g.extensionSource[i], min, max - 1) : getLogInside(g.extensionSource[i], min + 1, max);
+				int k = g.extensionResult[i];
+				logValues[k] = LOG.add(logValues[k], value);
+			}
+		}
+		if (length > 0) {
+			for (int i = 0; i < g.coverResult.length; i++) {
+				if (!(g.coverIsMinMax[i] ? isAdmissible(min, max) : isAdmissible(max, min))) {
+					continue;
+				}
+				double weight = g.coverIsMinMax[i] ? scores[min][max] : scores[max][min];
+				int k = g.coverResult[i];
+				logValues[k] = LOG.add(logValues[k], logValues[g.coverSource[i]] + weight);
+			}
+		}
+
+		// Rescale the cell.
+		double cellScale = Double.NEGATIVE_INFINITY;
+		for (int type = 0; type < nTypes; type++) {
+			cellScale = Math.max(cellScale, logValues[type]);
+		}
+		for (int type = 0; type < nTypes; type++) {
+			row[cell + type] = cellScale > Double.NEGATIVE_INFINITY ? Math.exp(logValues[type] - cellScale) : 0.0;
+		}
+		scales.set(min, max, cellScale);
+	}
+
+	/**
+	 * Computes the marginals of all items and edges. The spans are visited in
+	 * decreasing order of length; every item passes its marginal on to the
+	 * antecedents of the rules that derived it, reversing the order of the
+	 * inside pass.
+	 */
+	private void fillOutside(double logZ, double[][] edgeMarginals) {
+		Grammar g = grammar;
+		int nTypes = g.getNTypes();
+		int[] binaryLeft = g.binaryLeft;
+		int[] binaryRight = g.binaryRight;
+		int[] binaryResult = g.binaryResult;
+		double[] shares = values;
+		int[] reach = getReach();
+
+		for (int min = 0; min < nNodes; min++) {
+			double[] mu = marginals.getRow(min);
+			for (int k = 0; k < (nNodes - min) * nTypes; k++) {
+				mu[k] = 0.0;
+			}
+		}
+		for (int type : g.goalTypes) {
+			marginals.set(0, nNodes - 1, type, Math.exp(getLogInside(type, 0, nNodes - 1) - logZ));
+		}
+
+		for (int length = nNodes - 1; length > 0; length--) {
+			for (int min = 0, max = length; max < nNodes; min++, max++) {
+				double[] in = inside.getRow(min);
+				double[] mu = marginals.getRow(min);
+				int cell = length * nTypes;
+				if (max > reach[min]) {
+					continue;
+				}
+				double scale = scales.get(min, max);
+				if (scale == Double.NEGATIVE_INFINITY) {
+					continue;
+				}
+
+				for (int i = g.coverResult.length - 1; i >= 0; i--) {
+					int k = cell + g.coverResult[i];
+					if (mu[k] == 0.0 || !(g.coverIsMinMax[i] ? isAdmissible(min, max) : isAdmissible(max, min))) {
+						continue;
+					}
+					double weight = g.coverIsMinMax[i] ? scores[min][max] : scores[max][min];
+					double share = mu[k] * Math.exp(Math.log(in[cell + g.coverSource[i]]) + weight - Math.log(in[k]));
+					mu[cell + g.coverSource[i]] += share;
+					if (g.coverIsMinMax[i]) {
+						edgeMarginals[min][max] += share;
+					} else {
+						edgeMarginals[max][min] += share;
+					}
+				}
+
+				// The share of the marginal per unit of scaled inside value.
+				for (int type = 0; type < nTypes; type++) {
+					shares[type] = mu[cell + type] == 0.0 ? 0.0 : mu[cell + type] / in[cell + type];
+				}
+
+				for (int i = 0; i < g.extensionResult.length; i++) {
+					if (length - 1 >= g.extensionMinLength[i]) {
+						int min1 = g.extensionIsLeft[i] ? min : min + 1;
+						int max1 = min1 + length - 1;
+						int k1 = (length - 1) * nTypes + g.extensionSource[i];
+						double[] in1 = inside.getRow(min1);
+						double[] mu1 = marginals.getRow(min1);
+						mu1[k1] += shares[g.extensionResult[i]] * Math.exp(scales.get(min1, max1) - scale) * in1[k1];
+					}
+				}
+
+				int[] mids = getSplitPoints();
+				int from = mids == null ? min + 1 : getFirstSplitPoint(min, max);
+				int to = mids == null ? max : getEndSplitPoint(max);
+				for (int j = from; j < to; j++) {
+					int mid = mids == null ? j : mids[j];
+					double factor = Math.exp(scales.get(min, mid) + scales.get(mid, max) - scale);
+					if (factor == 0.0) {
+						continue;
+					}
+					int length1 = mid - min;
+					int cell1 = length1 * nTypes;
+					double[] in2 = inside.getRow(mid);
+					double[] mu2 = marginals.getRow(mid);
+					int cell2 = (max - mid) * nTypes;
+					int nRules = g.getNBinaryRules(length1);
+					for (int i = 0; i < nRules; i++) {
+						int k1 = cell1 + binaryLeft[i];
+						int k2 = cell2 + binaryRight[i];
+						double share = shares[binaryResult[i]] * factor * in[k1] * in2[k2];
+						mu[k1] += share;
+						mu2[k2] += share;
+					}
+				}
+			}
+		}
+	}
+}
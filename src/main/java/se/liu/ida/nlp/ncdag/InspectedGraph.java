@@ -13,7 +13,7 @@ public class InspectedGraph {
 	/**
 	 * The analyzed graph.
 	 */
-	private final Graph graph;
+	private final CompactGraph graph;
 
 	/**
 	 * The number of non-wall node of this graph.
@@ -21,14 +21,21 @@ public class InspectedGraph {
 	private final int nNonWallNodes;
 
 	/**
-	 * DFS of the graph.
+	 * DFS of the graph, or {@code null} if it has not been computed yet.
 	 */
-	private final DFS directedDFS;
+	private DFS directedDFS;
 
 	/**
-	 * DFS of the undirected graph.
+	 * The weakly connected components of the graph, or {@code null} if they
+	 * have not been computed yet.
 	 */
-	private final DFS undirectedDFS;
+	private UnionFind components;
+
+	/**
+	 * Whether this graph is cyclic, or {@code null} if this has not been
+	 * computed yet.
+	 */
+	private Boolean isCyclic;
 
 	/**
 	 * Flags indicating whether a node is a singleton.
@@ -40,21 +47,78 @@ public class InspectedGraph {
 	 */
 	private final int nSingletons;
 
+	/**
+	 * The maximal indegree of the nodes in this graph.
+	 */
+	private final int maximalIndegree;
+
+	/**
+	 * The maximal outdegree of the nodes in this graph.
+	 */
+	private final int maximalOutdegree;
+
+	/**
+	 * The number of nodes without incoming edges, including the wall node.
+	 */
+	private final int nNodesWithoutIncomingEdges;
+
+	/**
+	 * The number of nodes without outgoing edges, including the wall node.
+	 */
+	private final int nNodesWithoutOutgoingEdges;
+
+	/**
+	 * The crossing edges of this graph, or {@code null} if they have not
+	 * been computed yet.
+	 */
+	private Crossings crossings;
+
 	/**
 	 * Construct a new inspector for the specified graph.
 	 *
 	 * @param graph the graph to be inspected
 	 */
 	public InspectedGraph(Graph graph) {
+		this(new CompactGraph(graph));
+	}
+
+	/**
+	 * Construct a new inspector for the specified graph. The degree
+	 * statistics and the singletons are computed in a single pass over the
+	 * nodes; the properties that require a search of the graph are computed
+	 * when they are first needed.
+	 *
+	 * @param graph the graph to be inspected
+	 */
+	public InspectedGraph(CompactGraph graph) {
 		this.graph = graph;
 
 		int nNodes = graph.getNNodes();
 		this.nNonWallNodes = nNodes - 1;
 		this.isSingleton = new boolean[nNodes];
-		this.nSingletons = computeSingletons();
 
-		this.directedDFS = new DFS(graph);
-		this.undirectedDFS = new DFS(graph, true);
+		int nSingletons = 0;
+		int maximalIndegree = 0;
+		int maximalOutdegree = 0;
+		int nNodesWithoutIncomingEdges = 0;
+		int nNodesWithoutOutgoingEdges = 0;
+		for (int node = 0; node < nNodes; node++) {
+			int indegree = graph.getIndegree(node);
+			int outdegree = graph.getOutdegree(node);
+			maximalIndegree = Math.max(maximalIndegree, indegree);
+			maximalOutdegree = Math.max(maximalOutdegree, outdegree);
+			nNodesWithoutIncomingEdges += indegree == 0 ? 1 : 0;
+			nNodesWithoutOutgoingEdges += outdegree == 0 ? 1 : 0;
+			if (node != 0 && indegree == 0 && outdegree == 0 && !graph.isTop(node)) {
+				isSingleton[node] = true;
+				nSingletons++;
+			}
+		}
+		this.nSingletons = nSingletons;
+		this.maximalIndegree = maximalIndegree;
+		this.maximalOutdegree = maximalOutdegree;
+		this.nNodesWithoutIncomingEdges = nNodesWithoutIncomingEdges;
+		this.nNodesWithoutOutgoingEdges = nNodesWithoutOutgoingEdges;
 	}
 
 	/**
@@ -72,30 +136,35 @@ public class InspectedGraph {
 	 * @return The number of weakly connected components of the inspected graph
 	 */
 	public int getNComponents() {
-		return undirectedDFS.getNRuns();
+		return getComponents().getNSets();
 	}
 
 	/**
-	 * Tests whether the inspected graph contains a cycle.
+	 * Returns the weakly connected components of the inspected graph. They
+	 * are computed when this method is first called.
 	 *
-	 * @return {@code true} if and only if the inspected graph contains a cycle
+	 * @return the weakly connected components of the inspected graph
 	 */
-	public boolean isCyclic() {
-		return directedDFS.isCyclic();
+	public UnionFind getComponents() {
+		if (components == null) {
+			components = new UnionFind(graph);
+		}
+		return components;
 	}
 
 	/**
-	 * Computes flags indicating whether a node is a singleton.
+	 * Tests whether the inspected graph contains a cycle.
+	 *
+	 * @return {@code true} if and only if the inspected graph contains a cycle
 	 */
-	private int computeSingletons() {
-		int n = 0;
-		for (Node node : graph.getNodes()) {
-			if (node.id != 0 && !node.hasIncomingEdges() && !node.hasOutgoingEdges() && !node.isTop) {
-				isSingleton[node.id] = true;
-				n++;
+	public boolean isCyclic() {
+		if (isCyclic == null) {
+			if (directedDFS == null) {
+				directedDFS = new DFS(graph);
 			}
+			isCyclic = directedDFS.isCyclic();
 		}
-		return n;
+		return isCyclic;
 	}
 
 	/**
@@ -119,29 +188,21 @@ public class InspectedGraph {
 	}
 
 	/**
-	 * Computes the maximal indegree of the nodes in the inspected graph.
+	 * Returns the maximal indegree of the nodes in the inspected graph.
 	 *
 	 * @return the maximal indegree of the nodes in the inspected graph
 	 */
 	public int getMaximalIndegree() {
-		int max = 0;
-		for (Node node : graph.getNodes()) {
-			max = Math.max(max, node.getNIncomingEdges());
-		}
-		return max;
+		return maximalIndegree;
 	}
 
 	/**
-	 * Computes the maximal outdegree of the nodes in the inspected graph.
+	 * Returns the maximal outdegree of the nodes in the inspected graph.
 	 *
 	 * @return the maximal outdegree of the nodes in the inspected graph
 	 */
 	public int getMaximalOutdegree() {
-		int max = 0;
-		for (Node node : graph.getNodes()) {
-			max = Math.max(max, node.getNOutgoingEdges());
-		}
-		return max;
+		return maximalOutdegree;
 	}
 
 	/**
@@ -152,11 +213,7 @@ public class InspectedGraph {
 	 * @return the number of root nodes in the inspected graph
 	 */
 	public int getNRootNodes() {
-		int nRootNodes = 0;
-		for (Node node : graph.getNodes()) {
-			nRootNodes += node.hasIncomingEdges() ? 0 : 1;
-		}
-		return nRootNodes - 1; // the wall node
+		return nNodesWithoutIncomingEdges - 1; // the wall node
 	}
 
 	/**
@@ -167,11 +224,7 @@ public class InspectedGraph {
 	 * @return the number of leaf nodes in the inspected graph
 	 */
 	public int getNLeafNodes() {
-		int nLeafNodes = 0;
-		for (Node node : graph.getNodes()) {
-			nLeafNodes += node.hasOutgoingEdges() ? 0 : 1;
-		}
-		return nLeafNodes - 1; // the wall node
+		return nNodesWithoutOutgoingEdges - 1; // the wall node
 	}
 
 	/**
@@ -181,7 +234,7 @@ public class InspectedGraph {
 	 * @return {@code true} if and only if the inspected graph is a forest
 	 */
 	public boolean isForest() {
-		return !isCyclic() && getMaximalIndegree() <= 1;
+		return maximalIndegree <= 1 && !isCyclic();
 	}
 
 	/**
@@ -191,7 +244,7 @@ public class InspectedGraph {
 	 * @return {@code true} if and only if the inspected graph is a tree
 	 */
 	public boolean isTree() {
-		return isForest() && getNRootNodes() - getNSingletons() == 1;
+		return getNRootNodes() - nSingletons == 1 && isForest();
 	}
 
 	/**
@@ -201,30 +254,19 @@ public class InspectedGraph {
 	 * @return {@code true} if and only if the inspected graph is noncrossing
 	 */
 	public boolean isNoncrossing() {
-		for (Edge edge1 : graph.getEdges()) {
-			int min1 = Math.min(edge1.source, edge1.target);
-			int max1 = Math.max(edge1.source, edge1.target);
-			for (Edge edge2 : graph.getEdges()) {
-				int min2 = Math.min(edge2.source, edge2.target);
-				int max2 = Math.max(edge2.source, edge2.target);
-				if (overlap(min1, max1, min2, max2)) {
-					return false;
-				}
-			}
-		}
-		return true;
+		return crossings != null ? crossings.isNoncrossing() : Crossings.isNoncrossing(graph);
 	}
 
 	/**
-	 * Tests whether the specified edges overlap (cross).
+	 * Returns the crossing edges of the inspected graph. They are computed
+	 * when this method is first called.
 	 *
-	 * @param min1 the position of the left node of the first edge
-	 * @param max1 the position of the right node of the first edge
-	 * @param min2 the position of the left node of the second edge
-	 * @param max2 the position of the right node of the second edge
-	 * @return {@code true} if and only if the specified edges overlap
+	 * @return the crossing edges of the inspected graph
 	 */
-	private static boolean overlap(int min1, int max1, int min2, int max2) {
-		return min1 < min2 && min2 < max1 && max1 < max2 || min2 < min1 && min1 < max2 && max2 < max1;
+	public Crossings getCrossings() {
+		if (crossings == null) {
+			crossings = new Crossings(graph);
+		}
+		return crossings;
 	}
 }
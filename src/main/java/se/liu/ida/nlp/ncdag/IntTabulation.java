@@ -0,0 +1,163 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+/**
+ * A tabulation over a semiring of {@code int} values. The value of a
+ * derivation is the product of the weights of the edges added by its cover
+ * rules; the value of an item is the sum of the values of its derivations.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class IntTabulation extends Tabulation {
+
+	/**
+	 * The semiring.
+	 */
+	private final Semiring.OfInt semiring;
+
+	/**
+	 * The weights of the edges, indexed by source and target, or {@code null}
+	 * if every edge has weight one.
+	 */
+	private final int[][] weights;
+
+	/**
+	 * The chart; each cell holds one value per item type.
+	 */
+	private IntChart chart;
+
+	/**
+	 * Construct a new tabulation for the specified grammar.
+	 *
+	 * @param grammar the grammar
+	 * @param semiring the semiring
+	 * @param weights the weights of the edges, indexed by source and target,
+	 * or {@code null} if every edge has weight one
+	 */
+	public IntTabulation(Grammar grammar, Semiring.OfInt semiring, int[][] weights) {
+		super(grammar);
+		this.semiring = semiring;
+		this.weights = weights;
+	}
+
+	@Override
+	protected void prepare(int nNodes) {
+		if (chart == null) {
+			chart = new IntChart(nNodes, getReach(), getLeftReach(), grammar.getNTypes());
+		} else {
+			chart.reshape(nNodes, getReach(), getLeftReach());
+		}
+	}
+
+	@Override
+	protected void fillSpan(int min, int max) {
+		Grammar g = grammar;
+		Semiring.OfInt s = semiring;
+		int nTypes = g.getNTypes();
+		int length = max - min;
+		int[] row = chart.getRow(min);
+		int cell = length * nTypes;
+
+		int zero = s.zero();
+		for (int type = 0; type < nTypes; type++) {
+			row[cell + type] = zero;
+		}
+		for (int i = 0; i < g.axiomType.length; i++) {
+			if (g.axiomMinLength[i] <= length && length <= g.axiomMaxLength[i]) {
+				int k = cell + g.axiomType[i];
+				row[k] = s.add(row[k], s.one());
+			}
+		}
+
+		int[] column = chart.getColumn(max);
+		int[] mids = getSplitPoints();
+		if (mids == null) {
+			for (int mid = min + 1; mid < max; mid++) {
+				fillSplit(row, column, cell, min, mid, max);
+			}
+		} else {
+			for (int j = getFirstSplitPoint(min, max), end = getEndSplitPoint(max); j < end; j++) {
+				fillSplit(row, column, cell, min, mids[j], max);
+			}
+		}
+
+		for (int i = 0; i < g.extensionResult.length; i++) {
+			if (length - 1 >= g.extensionMinLength[i]) {
+				int value = g.extensionIsLeft[i] ? chart.get(min, max - 1, g.extensionSource[i]) : chart.get(min + 1, max, g.extensionSource[i]);
+				int k = cell + g.extensionResult[i];
+				row[k] = s.add(row[k], value);
+			}
+		}
+
+		if (length > 0) {
+			boolean isMinMaxAdmissible = isAdmissible(min, max);
+			boolean isMaxMinAdmissible = isAdmissible(max, min);
+			for (int i = 0; i < g.coverResult.length; i++) {
+				if (!(g.coverIsMinMax[i] ? isMinMaxAdmissible : isMaxMinAdmissible)) {
+					continue;
+				}
+				int weight = g.coverIsMinMax[i] ? getWeight(min, max) : getWeight(max, min);
+				int k = cell + g.coverResult[i];
+				row[k] = s.add(row[k], s.multiply(row[cell + g.coverSource[i]], weight));
+			}
+		}
+		chart.copyToColumn(min, max);
+	}
+
+	/**
+	 * Applies the binary rules with the specified split point. The left
+	 * antecedents are read from the row of {@code min}, the right antecedents
+	 * from the column of {@code max}.
+	 */
+	private void fillSplit(int[] row, int[] column, int cell, int min, int mid, int max) {
+		Grammar g = grammar;
+		Semiring.OfInt s = semiring;
+		int[] binaryLeft = g.binaryLeft;
+		int[] binaryRight = g.binaryRight;
+		int[] binaryResult = g.binaryResult;
+		int nTypes = g.getNTypes();
+		int length1 = mid - min;
+		int cell1 = length1 * nTypes;
+		int cell2 = (max - mid) * nTypes;
+		int nRules = g.getNBinaryRules(length1);
+		for (int i = 0; i < nRules; i++) {
+			// Skipping stores of unchanged values pays off for max-plus.
+			int k = cell + binaryResult[i];
+			int value = s.add(row[k], s.multiply(row[cell1 + binaryLeft[i]], column[cell2 + binaryRight[i]]));
+			if (value != row[k]) {
+				row[k] = value;
+			}
+		}
+	}
+
+	private int getWeight(int src, int tgt) {
+		return weights == null ? semiring.one() : weights[src][tgt];
+	}
+
+	/**
+	 * Returns the value of the specified item.
+	 *
+	 * @param type the item type
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return the value of the specified item
+	 */
+	public int get(int type, int min, int max) {
+		return chart.get(min, max, type);
+	}
+
+	/**
+	 * Returns the sum of the values of the goal items.
+	 *
+	 * @return the sum of the values of the goal items
+	 */
+	public int getGoal() {
+		int result = semiring.zero();
+		for (int type : grammar.goalTypes) {
+			result = semiring.add(result, chart.get(0, nNodes - 1, type));
+		}
+		return result;
+	}
+}
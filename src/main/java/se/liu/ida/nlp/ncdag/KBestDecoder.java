@@ -0,0 +1,459 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Enumerate the noncrossing acyclic digraphs for a sentence in decreasing
+ * order of their scores under an edge-factored model.
+ *
+ * <p>
+ * The items and rule instances of {@link Grammar#COUNTING} form a hypergraph
+ * in which every graph corresponds to exactly one derivation. This decoder
+ * implements the lazy enumeration of Huang and Chiang (2005, Algorithm 3):
+ * after a max-plus tabulation, the <em>k</em>-th best derivation of an item is
+ * computed only when it is needed, from a queue of candidates that is
+ * extended with the neighbours of the previously returned derivation. Getting
+ * the next graph therefore touches only the few items whose derivations
+ * change, rather than the full chart.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class KBestDecoder {
+
+	/**
+	 * The grammar.
+	 */
+	private final Grammar grammar;
+
+	/**
+	 * Construct a new decoder.
+	 */
+	public KBestDecoder() {
+		this(Grammar.COUNTING);
+	}
+
+	/**
+	 * Construct a new decoder for the specified grammar. The grammar should
+	 * have exactly one derivation for every graph of interest.
+	 *
+	 * @param grammar the grammar
+	 */
+	public KBestDecoder(Grammar grammar) {
+		if (grammar.getNRules() >= 0xff) {
+			throw new IllegalArgumentException("Too many rules: " + grammar.getNRules());
+		}
+		this.grammar = grammar;
+	}
+
+	/**
+	 * Returns an iterator over the graphs for the specified sentence, in
+	 * decreasing order of their scores. The nodes of the returned graphs are
+	 * copies of the nodes of the sentence, except that a node is marked as a
+	 * predicate if and only if it has outgoing edges. The edges carry the
+	 * label {@link Constants#UNDEFINED}.
+	 *
+	 * @param sentence a graph providing the nodes of the sentence
+	 * @param scores the scores of the edges, indexed by source and target
+	 * @return an iterator over the graphs for the specified sentence
+	 */
+	public Iterator<ScoredGraph> decode(Graph sentence, float[][] scores) {
+		return new Enumeration(sentence, scores);
+	}
+
+	/**
+	 * A graph together with its score.
+	 */
+	public static class ScoredGraph {
+
+		/**
+		 * The graph.
+		 */
+		public final Graph graph;
+
+		/**
+		 * The score of the graph.
+		 */
+		public final float score;
+
+		/**
+		 * Construct a new scored graph.
+		 *
+		 * @param graph the graph
+		 * @param score the score of the graph
+		 */
+		public ScoredGraph(Graph graph, float score) {
+			this.graph = graph;
+			this.score = score;
+		}
+	}
+
+	/**
+	 * A derivation of an item, represented by the rule instance used in its
+	 * last step and the ranks of the derivations of the antecedents.
+	 */
+	private static final class Derivation {
+
+		/**
+		 * The rule instance, encoded as {@code mid << 8 | (rule + 1)}, where
+		 * {@code mid} is the split point of a binary rule and zero for all
+		 * other rules. Axioms are encoded as zero.
+		 */
+		final int edge;
+
+		/**
+		 * The rank of the derivation of the first antecedent.
+		 */
+		final int rank1;
+
+		/**
+		 * The rank of the derivation of the second antecedent.
+		 */
+		final int rank2;
+
+		/**
+		 * The score of this derivation.
+		 */
+		final float score;
+
+		Derivation(int edge, int rank1, int rank2, float score) {
+			this.edge = edge;
+			this.rank1 = rank1;
+			this.rank2 = rank2;
+			this.score = score;
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Derivation)) {
+				return false;
+			}
+			Derivation other = (Derivation) object;
+			return edge == other.edge && rank1 == other.rank1 && rank2 == other.rank2;
+		}
+
+		@Override
+		public int hashCode() {
+			return (edge * 31 + rank1) * 31 + rank2;
+		}
+	}
+
+	private static final Comparator<Derivation> BEST_FIRST = (d1, d2) -> Float.compare(d2.score, d1.score);
+
+	/**
+	 * The derivations of an item found so far.
+	 */
+	private static final class ItemState {
+
+		/**
+		 * The best derivations, in decreasing order of their scores.
+		 */
+		final List<Derivation> derivations = new ArrayList<Derivation>();
+
+		/**
+		 * The candidates for the next-best derivation.
+		 */
+		final PriorityQueue<Derivation> candidates;
+
+		/**
+		 * The derivations that have ever been candidates.
+		 */
+		final Set<Derivation> seen;
+
+		ItemState(List<Derivation> initial) {
+			this.candidates = new PriorityQueue<Derivation>(Math.max(1, initial.size()), BEST_FIRST);
+			this.candidates.addAll(initial);
+			this.seen = new HashSet<Derivation>(initial);
+		}
+	}
+
+	/**
+	 * The enumeration of the derivations for a single sentence.
+	 */
+	private final class Enumeration implements Iterator<ScoredGraph> {
+
+		private final Graph sentence;
+
+		private final float[][] scores;
+
+		private final int nNodes;
+
+		private final int nTypes;
+
+		/**
+		 * The scores of the best derivations of the items.
+		 */
+		private final FloatTabulation viterbi;
+
+		/**
+		 * The states of the items, indexed by {@link #getIndex(int, int, int)};
+		 * {@code null} for items that have not been visited.
+		 */
+		private final ItemState[] states;
+
+		/**
+		 * The goal items, as candidates of the form {@code (type, rank)}.
+		 */
+		private final PriorityQueue<Derivation> goals = new PriorityQueue<Derivation>(BEST_FIRST);
+
+		Enumeration(Graph sentence, float[][] scores) {
+			this.sentence = sentence;
+			this.scores = scores;
+			this.nNodes = sentence.getNNodes();
+			this.nTypes = grammar.getNTypes();
+			this.viterbi = new FloatTabulation(grammar, Semiring.OfFloat.MAX_PLUS, scores);
+			viterbi.fill(nNodes);
+			this.states = new ItemState[nNodes * nNodes * nTypes];
+			for (int type : grammar.goalTypes) {
+				float score = viterbi.get(type, 0, nNodes - 1);
+				if (score > Float.NEGATIVE_INFINITY) {
+					goals.add(new Derivation(type, 0, 0, score));
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !goals.isEmpty();
+		}
+
+		@Override
+		public ScoredGraph next() {
+			if (goals.isEmpty()) {
+				throw new NoSuchElementException();
+			}
+			Derivation goal = goals.poll();
+			int type = goal.edge;
+			int rank = goal.rank1;
+
+			// Push the next derivation of the same goal item.
+			List<Derivation> derivations = getDerivations(type, 0, nNodes - 1, rank + 2);
+			if (derivations.size() > rank + 1) {
+				goals.add(new Derivation(type, rank + 1, 0, derivations.get(rank + 1).score));
+			}
+			return new ScoredGraph(getGraph(type, rank), goal.score);
+		}
+
+		private int getIndex(int type, int min, int max) {
+			return (min * nNodes + max) * nTypes + type;
+		}
+
+		/**
+		 * Returns the best derivations of the specified item, making sure
+		 * that at least the specified number of derivations has been
+		 * computed if the item has that many.
+		 */
+		private List<Derivation> getDerivations(int type, int min, int max, int k) {
+			int index = getIndex(type, min, max);
+			ItemState state = states[index];
+			if (state == null) {
+				state = new ItemState(getInitialCandidates(type, min, max));
+				states[index] = state;
+			}
+			List<Derivation> derivations = state.derivations;
+			while (derivations.size() < k) {
+				if (!derivations.isEmpty()) {
+					pushSuccessors(state, type, min, max, derivations.get(derivations.size() - 1));
+				}
+				if (state.candidates.isEmpty()) {
+					break;
+				}
+				derivations.add(state.candidates.poll());
+			}
+			return derivations;
+		}
+
+		/**
+		 * Returns the best derivation for every rule instance that derives
+		 * the specified item.
+		 */
+		private List<Derivation> getInitialCandidates(int type, int min, int max) {
+			Grammar g = grammar;
+			int length = max - min;
+			List<Derivation> candidates = new ArrayList<Derivation>();
+			for (int i = 0; i < g.axiomType.length; i++) {
+				if (g.axiomType[i] == type && g.axiomMinLength[i] <= length && length <= g.axiomMaxLength[i]) {
+					candidates.add(new Derivation(0, 0, 0, 0.0f));
+					break;
+				}
+			}
+			for (int mid = min + 1; mid < max; mid++) {
+				int nRules = g.getNBinaryRules(mid - min);
+				for (int i = 0; i < nRules; i++) {
+					if (g.binaryResult[i] == type) {
+						float score = viterbi.get(g.binaryLeft[i], min, mid) + viterbi.get(g.binaryRight[i], mid, max);
+						if (score > Float.NEGATIVE_INFINITY) {
+							candidates.add(new Derivation(mid << 8 | (i + 1), 0, 0, score));
+						}
+					}
+				}
+			}
+			int nBinary = g.binaryResult.length;
+			for (int i = 0; i < g.extensionResult.length; i++) {
+				if (g.extensionResult[i] == type && length - 1 >= g.extensionMinLength[i]) {
+					float score = g.extensionIsLeft[i] ? viterbi.get(g.extensionSource[i], min, max - 1) : viterbi.get(g.extensionSource[i], min + 1, max);
+					if (score > Float.NEGATIVE_INFINITY) {
+						candidates.add(new Derivation(nBinary + i + 1, 0, 0, score));
+					}
+				}
+			}
+			int nExtension = g.extensionResult.length;
+			if (length > 0) {
+				for (int i = 0; i < g.coverResult.length; i++) {
+					if (g.coverResult[i] == type) {
+						float score = getWeight(i, min, max) + viterbi.get(g.coverSource[i], min, max);
+						if (score > Float.NEGATIVE_INFINITY) {
+							candidates.add(new Derivation(nBinary + nExtension + i + 1, 0, 0, score));
+						}
+					}
+				}
+			}
+			return candidates;
+		}
+
+		private float getWeight(int coverRule, int min, int max) {
+			return grammar.coverIsMinMax[coverRule] ? scores[min][max] : scores[max][min];
+		}
+
+		/**
+		 * Adds the neighbours of the specified derivation to the candidates of
+		 * the specified item. A neighbour uses the same rule instance, with
+		 * the rank of one antecedent increased by one.
+		 */
+		private void pushSuccessors(ItemState state, int type, int min, int max, Derivation derivation) {
+			Grammar g = grammar;
+			int rule = (derivation.edge & 0xff) - 1;
+			if (rule < 0) {
+				return;
+			}
+			int nBinary = g.binaryResult.length;
+			int nExtension = g.extensionResult.length;
+			if (rule < nBinary) {
+				int mid = derivation.edge >>> 8;
+				List<Derivation> left = getDerivations(g.binaryLeft[rule], min, mid, derivation.rank1 + 2);
+				List<Derivation> right = getDerivations(g.binaryRight[rule], mid, max, derivation.rank2 + 1);
+				if (left.size() > derivation.rank1 + 1) {
+					float score = left.get(derivation.rank1 + 1).score + right.get(derivation.rank2).score;
+					push(state, new Derivation(derivation.edge, derivation.rank1 + 1, derivation.rank2, score));
+				}
+				right = getDerivations(g.binaryRight[rule], mid, max, derivation.rank2 + 2);
+				if (right.size() > derivation.rank2 + 1) {
+					float score = left.get(derivation.rank1).score + right.get(derivation.rank2 + 1).score;
+					push(state, new Derivation(derivation.edge, derivation.rank1, derivation.rank2 + 1, score));
+				}
+			} else if (rule < nBinary + nExtension) {
+				int i = rule - nBinary;
+				int min1 = g.extensionIsLeft[i] ? min : min + 1;
+				int max1 = g.extensionIsLeft[i] ? max - 1 : max;
+				List<Derivation> source = getDerivations(g.extensionSource[i], min1, max1, derivation.rank1 + 2);
+				if (source.size() > derivation.rank1 + 1) {
+					push(state, new Derivation(derivation.edge, derivation.rank1 + 1, 0, source.get(derivation.rank1 + 1).score));
+				}
+			} else {
+				int i = rule - nBinary - nExtension;
+				List<Derivation> source = getDerivations(g.coverSource[i], min, max, derivation.rank1 + 2);
+				if (source.size() > derivation.rank1 + 1) {
+					float score = getWeight(i, min, max) + source.get(derivation.rank1 + 1).score;
+					push(state, new Derivation(derivation.edge, derivation.rank1 + 1, 0, score));
+				}
+			}
+		}
+
+		private void push(ItemState state, Derivation derivation) {
+			if (state.seen.add(derivation)) {
+				state.candidates.add(derivation);
+			}
+		}
+
+		/**
+		 * Reads off the graph of the derivation with the specified rank of the
+		 * goal item with the specified type.
+		 */
+		private Graph getGraph(int goalType, int goalRank) {
+			Grammar g = grammar;
+			int nBinary = g.binaryResult.length;
+			int nExtension = g.extensionResult.length;
+
+			int[] stack = new int[48];
+			int top = 0;
+			long[] edges = new long[16];
+			int nEdges = 0;
+			stack = push(stack, top, goalType, 0, nNodes - 1, goalRank);
+			top += 4;
+			while (top > 0) {
+				int rank = stack[--top];
+				int max = stack[--top];
+				int min = stack[--top];
+				int type = stack[--top];
+				Derivation derivation = getDerivations(type, min, max, rank + 1).get(rank);
+				int rule = (derivation.edge & 0xff) - 1;
+				if (rule < 0) {
+					continue;
+				}
+				if (rule < nBinary) {
+					int mid = derivation.edge >>> 8;
+					stack = push(stack, top, g.binaryLeft[rule], min, mid, derivation.rank1);
+					top += 4;
+					stack = push(stack, top, g.binaryRight[rule], mid, max, derivation.rank2);
+					top += 4;
+				} else if (rule < nBinary + nExtension) {
+					int i = rule - nBinary;
+					if (g.extensionIsLeft[i]) {
+						stack = push(stack, top, g.extensionSource[i], min, max - 1, derivation.rank1);
+						top += 4;
+					} else {
+						stack = push(stack, top, g.extensionSource[i], min + 1, max, derivation.rank1);
+						top += 4;
+					}
+				} else {
+					int i = rule - nBinary - nExtension;
+					if (nEdges == edges.length) {
+						edges = Arrays.copyOf(edges, 2 * nEdges);
+					}
+					if (g.coverIsMinMax[i]) {
+						edges[nEdges++] = (long) max * nNodes + min;
+					} else {
+						edges[nEdges++] = (long) min * nNodes + max;
+					}
+					stack = push(stack, top, g.coverSource[i], min, max, derivation.rank1);
+					top += 4;
+				}
+			}
+			Arrays.sort(edges, 0, nEdges);
+
+			boolean[] isPred = new boolean[nNodes];
+			for (int i = 0; i < nEdges; i++) {
+				isPred[(int) (edges[i] % nNodes)] = true;
+			}
+			Graph graph = new Graph(sentence.id);
+			for (Node node : sentence.getNodes()) {
+				graph.addNode(node.form, node.lemma, node.pos, node.isTop, isPred[node.id]);
+			}
+			for (int i = 0; i < nEdges; i++) {
+				graph.addEdge((int) (edges[i] % nNodes), (int) (edges[i] / nNodes), Constants.UNDEFINED);
+			}
+			return graph;
+		}
+
+		private int[] push(int[] stack, int top, int type, int min, int max, int rank) {
+			if (top + 4 > stack.length) {
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			}
+			stack[top] = type;
+			stack[top + 1] = min;
+			stack[top + 2] = max;
+			stack[top + 3] = rank;
+			return stack;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * A chart of {@code long} values. Each cell of the chart may hold several
+ * values, which are stored next to each other.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class LongChart implements Chart {
+
+	private long[][] chart;
+
+	/**
+	 * A copy of the cells ordered by right endpoint, or {@code null} if this
+	 * chart does not keep such a copy.
+	 */
+	private long[][] columns;
+
+	/**
+	 * The number of values per cell.
+	 */
+	private final int depth;
+
+	public LongChart(int size) {
+		this(size, 1);
+	}
+
+	public LongChart(int size, int depth) {
+		this.chart = new long[size][];
+		for (int i = 0; i < size; i++) {
+			chart[i] = new long[(size - i) * depth];
+		}
+		this.columns = null;
+		this.depth = depth;
+	}
+
+	/**
+	 * Construct a chart that holds, for each left endpoint {@code min}, only
+	 * the spans whose right endpoint is at most {@code reach[min]}.
+	 *
+	 * @param reach the largest right endpoint, indexed by left endpoint
+	 * @param depth the number of values per cell
+	 */
+	public LongChart(int[] reach, int depth) {
+		this.chart = new long[reach.length][];
+		for (int i = 0; i < reach.length; i++) {
+			chart[i] = new long[(reach[i] - i + 1) * depth];
+		}
+		this.columns = null;
+		this.depth = depth;
+	}
+
+	/**
+	 * Construct a chart that holds, for each left endpoint {@code min}, only
+	 * the spans whose right endpoint is at most {@code reach[min]}, and in
+	 * addition a copy of the cells ordered by right endpoint. The copy holds,
+	 * for each right endpoint {@code max}, only the spans whose left endpoint
+	 * is at least {@code leftReach[max]}. The copy allows the binary rules to
+	 * read both of their antecedents from contiguous memory.
+	 *
+	 * @param size the number of nodes
+	 * @param reach the largest right endpoint, indexed by left endpoint
+	 * @param leftReach the smallest left endpoint, indexed by right endpoint
+	 * @param depth the number of values per cell
+	 * @see #copyToColumn(int, int)
+	 */
+	public LongChart(int size, int[] reach, int[] leftReach, int depth) {
+		this.chart = new long[size][];
+		this.columns = new long[size][];
+		this.depth = depth;
+		reshape(size, reach, leftReach);
+	}
+
+	/**
+	 * Adapts this chart to the specified number of nodes and reach. Rows and
+	 * columns that are large enough are reused, so that a chart that is
+	 * reshaped for a sequence of sentences eventually stops allocating. The
+	 * values of the cells are unspecified afterwards.
+	 *
+	 * @param size the number of nodes
+	 * @param reach the largest right endpoint, indexed by left endpoint
+	 * @param leftReach the smallest left endpoint, indexed by right endpoint
+	 */
+	void reshape(int size, int[] reach, int[] leftReach) {
+		if (chart.length < size) {
+			chart = Arrays.copyOf(chart, size);
+			columns = Arrays.copyOf(columns, size);
+		}
+		for (int i = 0; i < size; i++) {
+			int rowLength = (reach[i] - i + 1) * depth;
+			if (chart[i] == null || chart[i].length < rowLength) {
+				chart[i] = new long[rowLength];
+			}
+			int columnLength = (i - leftReach[i] + 1) * depth;
+			if (columns[i] == null || columns[i].length < columnLength) {
+				columns[i] = new long[columnLength];
+			}
+		}
+	}
+
+	@Override
+	public int getSize() {
+		return chart.length;
+	}
+
+	/**
+	 * Returns the number of values per cell.
+	 *
+	 * @return the number of values per cell
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public long get(int min, int max) {
+		return chart[min][(max - min) * depth];
+	}
+
+	public long get(int min, int max, int index) {
+		return chart[min][(max - min) * depth + index];
+	}
+
+	public void set(int min, int max, long value) {
+		chart[min][(max - min) * depth] = value;
+	}
+
+	public void set(int min, int max, int index, long value) {
+		chart[min][(max - min) * depth + index] = value;
+	}
+
+	/**
+	 * Returns the storage for the cells with the specified left endpoint. The
+	 * values for the span {@code (min, max)} start at position
+	 * {@code (max - min) * depth}.
+	 */
+	long[] getRow(int min) {
+		return chart[min];
+	}
+
+	/**
+	 * Returns the copy of the cells with the specified right endpoint. The
+	 * values for the span {@code (min, max)} start at position
+	 * {@code (max - min) * depth}.
+	 */
+	long[] getColumn(int max) {
+		return columns[max];
+	}
+
+	/**
+	 * Copies the values for the specified span to the cells ordered by right
+	 * endpoint. Spans whose left endpoint is smaller than the left reach of
+	 * the right endpoint may be ignored.
+	 *
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 */
+	void copyToColumn(int min, int max) {
+		int k = (max - min) * depth;
+		if (k < columns[max].length) {
+			System.arraycopy(chart[min], k, columns[max], k, depth);
+		}
+	}
+
+	@Override
+	public BigInteger getBigInteger(int min, int max) {
+		return BigInteger.valueOf(get(min, max));
+	}
+}
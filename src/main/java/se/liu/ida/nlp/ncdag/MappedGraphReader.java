@@ -0,0 +1,471 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read semantic dependency graphs from a memory-mapped file. This reader
+ * accepts the same format as {@link GraphReader} and returns the same graphs,
+ * but works on the bytes of the file directly: it scans for tabs and
+ * newlines, parses the ID, TOP and PRED columns without creating strings, and
+ * builds each graph in a single pass over its lines. The argument columns of
+ * a line are recorded as byte ranges and turned into edges once the
+ * predicates of the graph are known.
+ *
+ * <p>
+ * The strings for the forms, lemmas, part-of-speech tags and edge labels are
+ * decoded as UTF-8 and kept in a small cache, so that frequent strings are
+ * decoded only once. Consumers that only need the structure of the graphs
+ * can use {@link #readCompactGraph()}, which does not decode these strings at
+ * all. Files larger than the maximal size of a mapped region are mapped region
+ * by region; a single graph must fit into a region.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class MappedGraphReader implements Closeable {
+
+	/**
+	 * The maximal size of a mapped region of the file.
+	 */
+	private static final int MAX_REGION_SIZE = 1 << 30;
+
+	/**
+	 * The number of entries of the string cache; a power of two.
+	 */
+	private static final int CACHE_SIZE = 1 << 12;
+
+	private final FileChannel channel;
+
+	/**
+	 * The position in the file after the last byte to read.
+	 */
+	private final long rangeEnd;
+
+	/**
+	 * The position in the file of the currently mapped region.
+	 */
+	private long regionStart;
+
+	/**
+	 * The currently mapped region.
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * The current position in the mapped region.
+	 */
+	private int position;
+
+	/**
+	 * The node IDs of the predicates of the current graph.
+	 */
+	private int[] predicates = new int[16];
+
+	/**
+	 * The arguments of the current graph, four values per argument: the
+	 * target node, the index of the predicate, and the start and length of
+	 * the label in the mapped region.
+	 */
+	private int[] arguments = new int[64];
+
+	/**
+	 * The number of values in {@link #arguments} for the current graph.
+	 */
+	private int nArguments;
+
+	/**
+	 * The ID of the current graph.
+	 */
+	private String graphId;
+
+	/**
+	 * The number of nodes of the current graph.
+	 */
+	private int nNodes;
+
+	/**
+	 * The TOP and PRED flags of the nodes of the current graph, as in
+	 * {@link CompactGraph}.
+	 */
+	private byte[] flags = new byte[64];
+
+	/**
+	 * The forms, lemmas and part-of-speech tags of the nodes of the current
+	 * graph, three values per node.
+	 */
+	private String[] attributes = new String[3 * 64];
+
+	private final byte[][] cacheKeys = new byte[CACHE_SIZE][];
+
+	private final String[] cacheValues = new String[CACHE_SIZE];
+
+	/**
+	 * The table in which the strings of the graphs are interned, or
+	 * {@code null}.
+	 */
+	private SymbolTable symbols;
+
+	/**
+	 * Create a graph reader that reads from the specified file.
+	 *
+	 * @param fileName the name of the file to read from
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MappedGraphReader(String fileName) throws IOException {
+		this(Paths.get(fileName));
+	}
+
+	/**
+	 * Create a graph reader that reads from the specified file.
+	 *
+	 * @param file the file to read from
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MappedGraphReader(File file) throws IOException {
+		this(file.toPath());
+	}
+
+	/**
+	 * Create a graph reader that reads from the specified file.
+	 *
+	 * @param path the file to read from
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public MappedGraphReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+
+	private MappedGraphReader(FileChannel channel) throws IOException {
+		this(channel, 0L, channel.size());
+	}
+
+	/**
+	 * Create a graph reader that reads the graphs in the specified range of
+	 * bytes of the specified file. The range should start and end at the
+	 * boundary between two graphs. Closing the reader closes the channel.
+	 *
+	 * @param channel the file to read from
+	 * @param start the position of the first byte to read
+	 * @param end the position after the last byte to read
+	 * @throws IOException if the file cannot be mapped
+	 */
+	MappedGraphReader(FileChannel channel, long start, long end) throws IOException {
+		this.channel = channel;
+		this.rangeEnd = end;
+		map(start);
+	}
+
+	private void map(long start) throws IOException {
+		regionStart = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(rangeEnd - start, MAX_REGION_SIZE));
+		position = 0;
+	}
+
+	/**
+	 * Sets the table in which the forms, lemmas, part-of-speech tags and edge
+	 * labels of the graphs read are interned. Readers that share a table
+	 * share the strings of the graphs they read. With a table,
+	 * {@link #readCompactGraph()} also reads these attributes, as IDs in the
+	 * table.
+	 *
+	 * @param symbols the table, or {@code null} if the strings should not be
+	 * interned
+	 */
+	public void setSymbolTable(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	/**
+	 * Reads a single graph.
+	 *
+	 * @return the graph read, or {@code null} if the end of the file has been
+	 * reached
+	 * @throws IOException if an I/O error occurs, or if a graph does not fit
+	 * into a mapped region
+	 */
+	public Graph readGraph() throws IOException {
+		if (!readLines(true)) {
+			return null;
+		}
+		Graph graph = new Graph(graphId);
+		for (int node = 0; node < nNodes; node++) {
+			String form = intern(attributes[3 * node]);
+			String lemma = intern(attributes[3 * node + 1]);
+			String pos = intern(attributes[3 * node + 2]);
+			graph.addNode(form, lemma, pos, (flags[node] & CompactGraph.TOP) != 0, (flags[node] & CompactGraph.PRED) != 0);
+		}
+		for (int i = 0; i < nArguments; i += 4) {
+			graph.addEdge(predicates[arguments[i + 1]], arguments[i], intern(getString(arguments[i + 2], arguments[i + 3])));
+		}
+		return graph;
+	}
+
+	/**
+	 * Reads the structure of a single graph. Unless this reader has a symbol
+	 * table, this skips the FORM, LEMMA and POS columns and the edge labels,
+	 * and does not create any strings except for the graph ID.
+	 *
+	 * @return the graph read, or {@code null} if the end of the file has been
+	 * reached
+	 * @throws IOException if an I/O error occurs, or if a graph does not fit
+	 * into a mapped region
+	 */
+	public CompactGraph readCompactGraph() throws IOException {
+		SymbolTable symbols = this.symbols;
+		if (!readLines(symbols != null)) {
+			return null;
+		}
+		int nEdges = nArguments / 4;
+		int[] sources = new int[nEdges];
+		int[] targets = new int[nEdges];
+		for (int i = 0; i < nEdges; i++) {
+			sources[i] = predicates[arguments[4 * i + 1]];
+			targets[i] = arguments[4 * i];
+		}
+		if (symbols == null) {
+			return new CompactGraph(graphId, Arrays.copyOf(flags, nNodes), sources, targets);
+		}
+		int[] ids = new int[3 * nNodes];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = symbols.add(attributes[i]);
+		}
+		int[] labels = new int[nEdges];
+		for (int i = 0; i < nEdges; i++) {
+			labels[i] = symbols.add(getString(arguments[4 * i + 2], arguments[4 * i + 3]));
+		}
+		return new CompactGraph(graphId, Arrays.copyOf(flags, nNodes), sources, targets, symbols, ids, labels);
+	}
+
+	/**
+	 * Reads the lines of a single graph into the fields of this reader. The
+	 * strings for the forms, lemmas and part-of-speech tags are only created
+	 * if requested.
+	 *
+	 * @param withAttributes {@code true} if the strings for the forms, lemmas
+	 * and part-of-speech tags should be created
+	 * @return {@code false} if the end of the file has been reached
+	 */
+	private boolean readLines(boolean withAttributes) throws IOException {
+		MappedByteBuffer buffer = this.buffer;
+		int end = buffer.limit();
+
+		// Skip blank lines.
+		while (position < end && isNewline(buffer.get(position))) {
+			position++;
+		}
+
+		// Make sure that the next graph lies entirely within the region.
+		if (regionStart + end < rangeEnd) {
+			int graphEnd = findGraphEnd(position, end);
+			if (graphEnd == end) {
+				if (position == 0) {
+					throw new IOException("Graph too large at byte " + regionStart);
+				}
+				map(regionStart + position);
+				return readLines(withAttributes);
+			}
+		}
+
+		if (position >= end) {
+			return false;
+		}
+
+		// The first line holds the graph ID.
+		int p = position;
+		int q = p;
+		while (q < end && !isNewline(buffer.get(q))) {
+			q++;
+		}
+		graphId = getString(p, q - p);
+		p = skipNewline(q, end);
+
+		int nPredicates = 0;
+		nArguments = 0;
+		int nColumns = -1;
+		int node = 0;
+		while (p < end && !isNewline(buffer.get(p))) {
+			if (node == flags.length) {
+				flags = Arrays.copyOf(flags, 2 * node);
+				attributes = Arrays.copyOf(attributes, 3 * 2 * node);
+			}
+
+			// ID
+			int id = 0;
+			while (p < end && buffer.get(p) != '\t') {
+				id = 10 * id + (buffer.get(p++) - '0');
+			}
+			// Make sure that the node ID equals the value of the ID column.
+			assert id == node;
+
+			// FORM, LEMMA, POS
+			p++;
+			for (int i = 0; i < 3; i++) {
+				q = skipColumn(p, end);
+				if (withAttributes) {
+					attributes[3 * node + i] = getString(p, q - p);
+				}
+				p = q + 1;
+			}
+
+			// TOP, PRED
+			boolean isTop = buffer.get(p) == '+';
+			// Enforce valid values for the TOP column.
+			assert isTop || buffer.get(p) == '-';
+			p = skipColumn(p, end) + 1;
+			boolean isPred = buffer.get(p) == '+';
+			// Enforce valid values for the PRED column.
+			assert isPred || buffer.get(p) == '-';
+			p = skipColumn(p, end);
+
+			flags[node] = (byte) ((isTop ? CompactGraph.TOP : 0) | (isPred ? CompactGraph.PRED : 0));
+			if (isPred) {
+				if (nPredicates == predicates.length) {
+					predicates = Arrays.copyOf(predicates, 2 * nPredicates);
+				}
+				predicates[nPredicates++] = node;
+			}
+
+			// ARG columns
+			int k = 0;
+			while (p < end && buffer.get(p) == '\t') {
+				q = skipColumn(++p, end);
+				if (q - p != 1 || buffer.get(p) != '_') {
+					if (nArguments + 4 > arguments.length) {
+						arguments = Arrays.copyOf(arguments, 2 * arguments.length);
+					}
+					arguments[nArguments++] = node;
+					arguments[nArguments++] = k;
+					arguments[nArguments++] = p;
+					arguments[nArguments++] = q - p;
+				}
+				k++;
+				p = q;
+			}
+			// All lines should have the same number of columns.
+			assert nColumns < 0 || k == nColumns;
+			nColumns = k;
+
+			p = skipNewline(p, end);
+			node++;
+		}
+		position = p;
+		nNodes = node;
+
+		// There should be exactly 6 + number of predicates many columns.
+		assert node == 0 || nColumns == nPredicates;
+
+		return true;
+	}
+
+	/**
+	 * Returns the position of the blank line after the graph that starts at
+	 * the specified position, or the end of the region.
+	 */
+	private int findGraphEnd(int p, int end) {
+		boolean isLineStart = false;
+		while (p < end) {
+			byte b = buffer.get(p++);
+			if (b == '\n') {
+				if (isLineStart) {
+					return p - 1;
+				}
+				isLineStart = true;
+			} else if (b != '\r') {
+				isLineStart = false;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the position of the first tab, newline or carriage return at
+	 * or after the specified position, or the end of the region.
+	 */
+	private int skipColumn(int p, int end) {
+		while (p < end) {
+			byte b = buffer.get(p);
+			if (b == '\t' || isNewline(b)) {
+				return p;
+			}
+			p++;
+		}
+		return end;
+	}
+
+	/**
+	 * Returns the position after the line terminator at the specified
+	 * position.
+	 */
+	private int skipNewline(int p, int end) {
+		if (p < end && buffer.get(p) == '\r') {
+			p++;
+		}
+		if (p < end && buffer.get(p) == '\n') {
+			p++;
+		}
+		return p;
+	}
+
+	private static boolean isNewline(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	/**
+	 * Returns the string encoded by the specified bytes of the mapped region,
+	 * using the string cache.
+	 */
+	private String getString(int start, int length) {
+		int hash = length;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer.get(start + i);
+		}
+		int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+		byte[] key = cacheKeys[slot];
+		if (key != null && key.length == length && matches(key, start)) {
+			return cacheValues[slot];
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		String value = new String(bytes, StandardCharsets.UTF_8);
+		cacheKeys[slot] = bytes;
+		cacheValues[slot] = value;
+		return value;
+	}
+
+	private String intern(String string) {
+		return symbols == null ? string : symbols.intern(string);
+	}
+
+	private boolean matches(byte[] key, int start) {
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != buffer.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the file. The mapped region remains valid until it is garbage
+	 * collected.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
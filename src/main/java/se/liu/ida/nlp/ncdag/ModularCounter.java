@@ -0,0 +1,197 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Count the number of noncrossing acyclic digraphs using modular arithmetic.
+ *
+ * <p>
+ * This counter fills the same length-indexed charts as
+ * {@link Counter#getNDerivationsByLength(int)}, but over primitive
+ * {@code long} values modulo a number of 62-bit primes. The primes are
+ * processed independently and in parallel, and the exact count is
+ * reconstructed using the Chinese remainder theorem. The counter can also
+ * compute the count modulo a single user-specified modulus.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class ModularCounter {
+
+	private static ModularCounter instance = null;
+
+	/**
+	 * The primes found so far, in decreasing order.
+	 */
+	private static long[] primes = new long[0];
+
+	private ModularCounter() {
+		// Private constructor to prevent instantiation.
+	}
+
+	public static ModularCounter getInstance() {
+		if (instance == null) {
+			instance = new ModularCounter();
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the number of noncrossing acyclic digraphs with the specified
+	 * number of nodes.
+	 *
+	 * @param nNodes the number of nodes
+	 * @return the number of noncrossing acyclic digraphs with the specified
+	 * number of nodes
+	 */
+	public BigInteger getNDerivations(int nNodes) {
+		long[] moduli = getPrimes(getNPrimes(nNodes));
+		long[] residues = IntStream.range(0, moduli.length).parallel().mapToLong(i -> getNDerivations(nNodes, moduli[i])).toArray();
+
+		// Garner's algorithm.
+		BigInteger result = BigInteger.ZERO;
+		BigInteger product = BigInteger.ONE;
+		for (int i = 0; i < moduli.length; i++) {
+			BigInteger modulus = BigInteger.valueOf(moduli[i]);
+			BigInteger difference = BigInteger.valueOf(residues[i]).subtract(result);
+			BigInteger factor = difference.multiply(product.modInverse(modulus)).mod(modulus);
+			result = result.add(product.multiply(factor));
+			product = product.multiply(modulus);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of noncrossing acyclic digraphs with the specified
+	 * number of nodes, modulo the specified number.
+	 *
+	 * @param nNodes the number of nodes
+	 * @param modulus an odd number greater than 1 and less than
+	 * 2<sup>62</sup>
+	 * @return the number of noncrossing acyclic digraphs with the specified
+	 * number of nodes, modulo the specified number
+	 */
+	public long getNDerivations(int nNodes, long modulus) {
+		Modulus m = new Modulus(modulus);
+
+		long[] nMinMaxEdge = new long[nNodes];
+		long[] nMaxMinEdge = new long[nNodes];
+		long[] nMinMaxPath = new long[nNodes];
+		long[] nMaxMinPath = new long[nNodes];
+		long[] nMixConnected = new long[nNodes];
+		long[] nNonConnected = new long[nNodes];
+
+		nMixConnected[0] = m.one();
+
+		for (int length = 1; length < nNodes; length++) {
+			long nMinMaxPathHere = m.zero();
+			long nMaxMinPathHere = m.zero();
+			long nMixConnectedHere = m.zero();
+			long nNonConnectedHere = m.zero();
+
+			for (int length1 = 1; length1 < length; length1++) {
+				int length2 = length - length1;
+
+				// Rules 01, 05
+				long nMinMaxOpen = m.add(nMinMaxEdge[length1], nMinMaxPath[length1]);
+				nMinMaxPathHere = m.add(nMinMaxPathHere, m.multiply(nMinMaxOpen, nMinMaxEdge[length2]));
+
+				// Rules 04, 08
+				long nMaxMinOpen = m.add(nMaxMinEdge[length1], nMaxMinPath[length1]);
+				nMaxMinPathHere = m.add(nMaxMinPathHere, m.multiply(nMaxMinOpen, nMaxMinEdge[length2]));
+
+				// Rules 02, 06, 10
+				long nMixLeft = m.add(nMinMaxOpen, nMixConnected[length1]);
+				nMixConnectedHere = m.add(nMixConnectedHere, m.multiply(nMixLeft, nMaxMinEdge[length2]));
+
+				// Rules 03, 07, 09
+				long nMixRight = m.add(nMaxMinOpen, nMixConnected[length1]);
+				nMixConnectedHere = m.add(nMixConnectedHere, m.multiply(nMixRight, nMinMaxEdge[length2]));
+
+				// Rules 09a, 10a
+				long nEdges2 = m.add(nMinMaxEdge[length2], nMaxMinEdge[length2]);
+				nNonConnectedHere = m.add(nNonConnectedHere, m.multiply(nNonConnected[length1], nEdges2));
+			}
+
+			// Rules 11-15a
+			nNonConnectedHere = m.add(nNonConnectedHere, sum(m, nMinMaxEdge[length - 1], nMaxMinEdge[length - 1], nMinMaxPath[length - 1]));
+			nNonConnectedHere = m.add(nNonConnectedHere, sum(m, nMaxMinPath[length - 1], nMixConnected[length - 1], nNonConnected[length - 1]));
+
+			nMinMaxPath[length] = nMinMaxPathHere;
+			nMaxMinPath[length] = nMaxMinPathHere;
+			nMixConnected[length] = nMixConnectedHere;
+			nNonConnected[length] = nNonConnectedHere;
+
+			// Rules 16, 18, 18a
+			nMinMaxEdge[length] = sum(m, nMinMaxPathHere, nMixConnectedHere, nNonConnectedHere);
+
+			// Rules 17, 19, 19a
+			nMaxMinEdge[length] = sum(m, nMaxMinPathHere, nMixConnectedHere, nNonConnectedHere);
+		}
+
+		long result = m.zero();
+		result = m.add(result, sum(m, nMinMaxEdge[nNodes - 1], nMaxMinEdge[nNodes - 1], nMinMaxPath[nNodes - 1]));
+		result = m.add(result, sum(m, nMaxMinPath[nNodes - 1], nMixConnected[nNodes - 1], nNonConnected[nNodes - 1]));
+		return m.fromMontgomery(result);
+	}
+
+	private static long sum(Modulus m, long a, long b, long c) {
+		return m.add(m.add(a, b), c);
+	}
+
+	/**
+	 * Returns the number of primes needed to reconstruct the number of
+	 * noncrossing acyclic digraphs with the specified number of nodes.
+	 *
+	 * <p>
+	 * Every noncrossing graph on <em>n</em> &ge; 2 nodes is a subgraph of a
+	 * triangulation of the <em>n</em>-gon. There are fewer than
+	 * 4<sup><em>n</em></sup> triangulations, each with 2<em>n</em>&nbsp;-&nbsp;3
+	 * edges, and every edge can be absent or present in one of two directions.
+	 * Therefore, the number of noncrossing acyclic digraphs is less than
+	 * 36<sup><em>n</em></sup>. Each prime contributes at least 61 bits.
+	 *
+	 * @param nNodes the number of nodes
+	 * @return the number of primes needed
+	 */
+	public static int getNPrimes(int nNodes) {
+		int nBits = BigInteger.valueOf(36).pow(nNodes).bitLength();
+		return (nBits + 60) / 61;
+	}
+
+	/**
+	 * Returns the specified number of the largest primes less than
+	 * 2<sup>62</sup>, in decreasing order.
+	 *
+	 * @param nPrimes the number of primes
+	 * @return the specified number of primes
+	 */
+	public static synchronized long[] getPrimes(int nPrimes) {
+		if (primes.length < nPrimes) {
+			int i = primes.length;
+			primes = Arrays.copyOf(primes, Math.max(nPrimes, 2 * i));
+			long candidate = i == 0 ? Modulus.LIMIT - 1 : primes[i - 1] - 2;
+			for (; i < primes.length; candidate -= 2) {
+				if (BigInteger.valueOf(candidate).isProbablePrime(100)) {
+					primes[i++] = candidate;
+				}
+			}
+		}
+		return Arrays.copyOf(primes, nPrimes);
+	}
+
+	public static void main(String[] args) {
+		ModularCounter counter = ModularCounter.getInstance();
+		int nNodes = Integer.parseInt(args[0]);
+		if (args.length > 1) {
+			System.out.println(counter.getNDerivations(nNodes, Long.parseLong(args[1])));
+		} else {
+			System.out.println(counter.getNDerivations(nNodes));
+		}
+		System.exit(0);
+	}
+}
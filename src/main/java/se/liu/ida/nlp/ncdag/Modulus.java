@@ -0,0 +1,183 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic modulo an odd number less than 2<sup>62</sup>.
+ *
+ * <p>
+ * Values are kept in Montgomery form, so that a modular multiplication needs
+ * no division. Use {@link #toMontgomery(long)} and
+ * {@link #fromMontgomery(long)} to convert between ordinary residues and the
+ * internal representation. All methods are allocation-free. As a
+ * {@link Semiring.OfLong}, this class can be used to count derivations
+ * modulo the modulus with a {@link LongTabulation}.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public final class Modulus implements Semiring.OfLong {
+
+	/**
+	 * The largest supported modulus (exclusive).
+	 */
+	public static final long LIMIT = 1L << 62;
+
+	/**
+	 * The modulus.
+	 */
+	private final long modulus;
+
+	/**
+	 * The negated inverse of the modulus, modulo 2<sup>64</sup>.
+	 */
+	private final long negatedInverse;
+
+	/**
+	 * The Montgomery form of one.
+	 */
+	private final long one;
+
+	/**
+	 * The square of 2<sup>64</sup>, modulo the modulus.
+	 */
+	private final long rSquared;
+
+	/**
+	 * Construct arithmetic modulo the specified number.
+	 *
+	 * @param modulus an odd number greater than 1 and less than
+	 * 2<sup>62</sup>
+	 * @throws IllegalArgumentException if the modulus is not supported
+	 */
+	public Modulus(long modulus) {
+		if (modulus < 3 || modulus >= LIMIT || (modulus & 1) == 0) {
+			throw new IllegalArgumentException("Unsupported modulus: " + modulus);
+		}
+		this.modulus = modulus;
+
+		// Newton iteration; each step doubles the number of correct bits.
+		long inverse = modulus;
+		for (int i = 0; i < 5; i++) {
+			inverse *= 2 - modulus * inverse;
+		}
+		this.negatedInverse = -inverse;
+
+		BigInteger m = BigInteger.valueOf(modulus);
+		BigInteger r = BigInteger.ONE.shiftLeft(64).mod(m);
+		this.one = r.longValue();
+		this.rSquared = r.multiply(r).mod(m).longValue();
+	}
+
+	/**
+	 * Returns the modulus.
+	 *
+	 * @return the modulus
+	 */
+	public long getModulus() {
+		return modulus;
+	}
+
+	/**
+	 * Returns the Montgomery form of zero.
+	 *
+	 * @return the Montgomery form of zero
+	 */
+	@Override
+	public long zero() {
+		return 0L;
+	}
+
+	/**
+	 * Returns the Montgomery form of one.
+	 *
+	 * @return the Montgomery form of one
+	 */
+	@Override
+	public long one() {
+		return one;
+	}
+
+	/**
+	 * Converts the specified residue into Montgomery form.
+	 *
+	 * @param a a residue between 0 (inclusive) and the modulus (exclusive)
+	 * @return the Montgomery form of the specified residue
+	 */
+	public long toMontgomery(long a) {
+		return multiply(a, rSquared);
+	}
+
+	/**
+	 * Converts the specified value from Montgomery form into a residue.
+	 *
+	 * @param a a value in Montgomery form
+	 * @return the residue represented by the specified value
+	 */
+	public long fromMontgomery(long a) {
+		return reduce(0L, a);
+	}
+
+	/**
+	 * Adds two values in Montgomery form.
+	 *
+	 * @param a the first summand
+	 * @param b the second summand
+	 * @return the sum of the two values
+	 */
+	@Override
+	public long add(long a, long b) {
+		long sum = a + b;
+		return sum >= modulus ? sum - modulus : sum;
+	}
+
+	/**
+	 * Multiplies two values in Montgomery form.
+	 *
+	 * @param a the first factor
+	 * @param b the second factor
+	 * @return the product of the two values
+	 */
+	@Override
+	public long multiply(long a, long b) {
+		return reduce(multiplyHigh(a, b), a * b);
+	}
+
+	/**
+	 * Computes the Montgomery reduction of the 128-bit number with the
+	 * specified high and low words.
+	 */
+	private long reduce(long high, long low) {
+		long u = low * negatedInverse;
+		// low + u * modulus is divisible by 2^64; it carries iff low != 0.
+		long carry = low != 0L ? 1L : 0L;
+		long result = high + unsignedMultiplyHigh(u, modulus) + carry;
+		return result >= modulus ? result - modulus : result;
+	}
+
+	/**
+	 * Returns the high word of the signed 128-bit product of the specified
+	 * numbers.
+	 */
+	static long multiplyHigh(long x, long y) {
+		long x1 = x >> 32;
+		long x2 = x & 0xFFFFFFFFL;
+		long y1 = y >> 32;
+		long y2 = y & 0xFFFFFFFFL;
+		long z2 = x2 * y2;
+		long t = x1 * y2 + (z2 >>> 32);
+		long z1 = (t & 0xFFFFFFFFL) + x2 * y1;
+		long z0 = t >> 32;
+		return x1 * y1 + z0 + (z1 >> 32);
+	}
+
+	/**
+	 * Returns the high word of the unsigned 128-bit product of the specified
+	 * numbers.
+	 */
+	static long unsignedMultiplyHigh(long x, long y) {
+		return multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+/**
+ * Semirings over primitive values, used as the weight domains of a
+ * {@link Tabulation}.
+ *
+ * <p>
+ * There is one interface per primitive carrier type, and a matching
+ * tabulation ({@link IntTabulation}, {@link LongTabulation},
+ * {@link FloatTabulation}, {@link DoubleTabulation}) that works on arrays of
+ * that type. A tabulation calls its semiring through a final field, so as
+ * long as a program uses a single semiring per carrier type, the call sites
+ * stay monomorphic and the JIT compiler can inline the semiring operations
+ * into the kernel. No values are boxed.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public interface Semiring {
+
+	/**
+	 * A semiring over {@code int} values.
+	 */
+	public interface OfInt extends Semiring {
+
+		/**
+		 * The max-plus semiring over {@code int} values. Its zero is
+		 * {@code Integer.MIN_VALUE / 4}. A tabulation initializes every item
+		 * with zero and multiplies only item values and weights, so as long
+		 * as the weights lie between the zero and
+		 * {@code Integer.MAX_VALUE / 4}, no product can overflow.
+		 */
+		public static final OfInt MAX_PLUS = new OfInt() {
+
+			@Override
+			public int zero() {
+				return Integer.MIN_VALUE / 4;
+			}
+
+			@Override
+			public int one() {
+				return 0;
+			}
+
+			@Override
+			public int add(int a, int b) {
+				return a >= b ? a : b;
+			}
+
+			@Override
+			public int multiply(int a, int b) {
+				return a + b;
+			}
+		};
+
+		/**
+		 * The Boolean semiring, with {@code 0} for false and {@code 1} for
+		 * true. Over this semiring, a tabulation recognizes whether an item
+		 * has a derivation.
+		 */
+		public static final OfInt BOOLEAN = new OfInt() {
+
+			@Override
+			public int zero() {
+				return 0;
+			}
+
+			@Override
+			public int one() {
+				return 1;
+			}
+
+			@Override
+			public int add(int a, int b) {
+				return a | b;
+			}
+
+			@Override
+			public int multiply(int a, int b) {
+				return a & b;
+			}
+		};
+
+		public int zero();
+
+		public int one();
+
+		public int add(int a, int b);
+
+		public int multiply(int a, int b);
+	}
+
+	/**
+	 * A semiring over {@code long} values. {@link Modulus} implements this
+	 * interface for counting modulo a number.
+	 */
+	public interface OfLong extends Semiring {
+
+		public long zero();
+
+		public long one();
+
+		public long add(long a, long b);
+
+		public long multiply(long a, long b);
+	}
+
+	/**
+	 * A semiring over {@code float} values.
+	 */
+	public interface OfFloat extends Semiring {
+
+		/**
+		 * The max-plus semiring over {@code float} values.
+		 */
+		public static final OfFloat MAX_PLUS = new OfFloat() {
+
+			@Override
+			public float zero() {
+				return Float.NEGATIVE_INFINITY;
+			}
+
+			@Override
+			public float one() {
+				return 0.0f;
+			}
+
+			@Override
+			public float add(float a, float b) {
+				return a >= b ? a : b;
+			}
+
+			@Override
+			public float multiply(float a, float b) {
+				return a + b;
+			}
+		};
+
+		public float zero();
+
+		public float one();
+
+		public float add(float a, float b);
+
+		public float multiply(float a, float b);
+	}
+
+	/**
+	 * A semiring over {@code double} values.
+	 */
+	public interface OfDouble extends Semiring {
+
+		/**
+		 * The max-plus semiring over {@code double} values.
+		 */
+		public static final OfDouble MAX_PLUS = new OfDouble() {
+
+			@Override
+			public double zero() {
+				return Double.NEGATIVE_INFINITY;
+			}
+
+			@Override
+			public double one() {
+				return 0.0;
+			}
+
+			@Override
+			public double add(double a, double b) {
+				return a >= b ? a : b;
+			}
+
+			@Override
+			public double multiply(double a, double b) {
+				return a + b;
+			}
+		};
+
+		/**
+		 * The log semiring, in which values are the natural logarithms of
+		 * non-negative reals. Addition is computed as
+		 * {@code log(exp(a) + exp(b))} without leaving log space.
+		 */
+		public static final OfDouble LOG = new OfDouble() {
+
+			@Override
+			public double zero() {
+				return Double.NEGATIVE_INFINITY;
+			}
+
+			@Override
+			public double one() {
+				return 0.0;
+			}
+
+			@Override
+			public double add(double a, double b) {
+				if (a < b) {
+					double t = a;
+					a = b;
+					b = t;
+				}
+				if (b == Double.NEGATIVE_INFINITY) {
+					return a;
+				}
+				return a + Math.log1p(Math.exp(b - a));
+			}
+
+			@Override
+			public double multiply(double a, double b) {
+				return a + b;
+			}
+		};
+
+		public double zero();
+
+		public double one();
+
+		public double add(double a, double b);
+
+		public double multiply(double a, double b);
+	}
+}
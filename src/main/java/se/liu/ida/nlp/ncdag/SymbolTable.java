@@ -0,0 +1,116 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of symbols, such as the forms, lemmas, part-of-speech tags and edge
+ * labels of a corpus. The table maps each symbol to a dense integer ID, in the
+ * order in which the symbols were added, and keeps a single instance of each
+ * symbol. Readers that share a table therefore share the strings of all
+ * graphs they read.
+ *
+ * <p>
+ * A table can be used by several threads at the same time. Looking up a
+ * symbol that is already in the table does not lock.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class SymbolTable {
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * The symbols, indexed by ID. The array is replaced when it grows, and
+	 * the IDs are published only after their symbols have been stored and
+	 * the size has grown to include them.
+	 */
+	private volatile String[] symbols = new String[64];
+
+	private volatile int size;
+
+	/**
+	 * Returns the ID of the specified symbol, adding the symbol to this table
+	 * if necessary.
+	 *
+	 * @param symbol the symbol
+	 * @return the ID of the specified symbol
+	 * @throws NullPointerException if the symbol is {@code null}
+	 */
+	public int add(String symbol) {
+		if (symbol == null) {
+			throw new NullPointerException("The symbol must not be null");
+		}
+		Integer id = ids.get(symbol);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(symbol);
+			if (id != null) {
+				return id;
+			}
+			int n = size;
+			String[] symbols = this.symbols;
+			if (n == symbols.length) {
+				symbols = Arrays.copyOf(symbols, 2 * n);
+			}
+			symbols[n] = symbol;
+			this.symbols = symbols;
+			// Grow the size before the ID is published, so that a thread
+			// that finds the ID can also look up the symbol.
+			size = n + 1;
+			ids.put(symbol, n);
+			return n;
+		}
+	}
+
+	/**
+	 * Returns the instance of the specified symbol that is kept by this
+	 * table, adding the symbol if necessary.
+	 *
+	 * @param symbol the symbol
+	 * @return the instance of the specified symbol kept by this table
+	 * @throws NullPointerException if the symbol is {@code null}
+	 */
+	public String intern(String symbol) {
+		return getSymbol(add(symbol));
+	}
+
+	/**
+	 * Returns the ID of the specified symbol.
+	 *
+	 * @param symbol the symbol
+	 * @return the ID of the specified symbol, or -1 if the symbol is not in
+	 * this table
+	 */
+	public int getId(String symbol) {
+		Integer id = ids.get(symbol);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the symbol with the specified ID.
+	 *
+	 * @param id the ID of the symbol
+	 * @return the symbol with the specified ID
+	 */
+	public String getSymbol(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No symbol with ID " + id);
+		}
+		return symbols[id];
+	}
+
+	/**
+	 * Returns the number of symbols in this table.
+	 *
+	 * @return the number of symbols in this table
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.Arrays;
+
+/**
+ * A tabulation of the items of a {@link Grammar}.
+ *
+ * <p>
+ * Subclasses store the values of the items in charts and implement
+ * {@link #fillSpan(int, int)}. That method computes the
+ * values of all items on a single span: first the axioms, then all binary
+ * rules in a single pass over the split points, then the extension rules,
+ * and finally the cover rules. Most subclasses compute over a
+ * {@link Semiring}; {@link HybridTabulation} counts derivations exactly.
+ *
+ * <p>
+ * A tabulation can be restricted to graphs whose edges are admitted by a
+ * {@link GraphFilter}, provided the grammar is {@link Grammar#isPrunable()
+ * prunable}. It then computes only those spans that can contribute to a
+ * goal item, and for each span only those split points {@code mid} that
+ * have an admissible edge to {@code max}. Subclasses iterate over the split
+ * points using {@link #getSplitPoints()},
+ * {@link #getFirstSplitPoint(int, int)} and {@link #getEndSplitPoint(int)},
+ * allocate their charts up to {@link #getReach()}, and skip cover rules for edges that are not
+ * {@link #isAdmissible(int, int) admissible}.
+ *
+ * <p>
+ * In the same way, a tabulation can be restricted to graphs whose edges
+ * span at most a given number of nodes. The spans that are longer than this
+ * bound can then only be derived by the binary rules, and only if they start
+ * at the first node; the charts store the other rows as bands. For a bound
+ * <em>L</em>, a tabulation then takes time and space proportional to
+ * <em>n</em>&middot;<em>L</em><sup>2</sup> and
+ * <em>n</em>&middot;<em>L</em> rather than <em>n</em><sup>3</sup> and
+ * <em>n</em><sup>2</sup>.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public abstract class Tabulation {
+
+	/**
+	 * The grammar.
+	 */
+	protected final Grammar grammar;
+
+	/**
+	 * The number of nodes of the most recent tabulation.
+	 */
+	protected int nNodes;
+
+	/**
+	 * The filter for the edges, or {@code null} if all edges are admissible.
+	 */
+	private GraphFilter filter;
+
+	/**
+	 * The maximal length of an admissible edge.
+	 */
+	private int maxArcLength = Integer.MAX_VALUE;
+
+	/**
+	 * For each left endpoint, the largest right endpoint of a span that needs
+	 * to be computed.
+	 */
+	private int[] reach;
+
+	/**
+	 * For each right endpoint, the smallest left endpoint of a span that can
+	 * be the right antecedent of a binary rule.
+	 */
+	private int[] leftReach;
+
+	/**
+	 * For each right endpoint {@code max}, the nodes to the left of
+	 * {@code max} with an admissible edge to {@code max}, in increasing
+	 * order. The nodes for {@code max} are stored from position
+	 * {@code splitPointOffsets[max]} up to but excluding position
+	 * {@code splitPointOffsets[max + 1]}.
+	 */
+	private int[] splitPoints = new int[0];
+
+	/**
+	 * For each right endpoint, the position of its first split point.
+	 */
+	private int[] splitPointOffsets = new int[1];
+
+	/**
+	 * Indicates whether some edges are not admissible in the most recent
+	 * tabulation.
+	 */
+	private boolean isRestricted;
+
+	/**
+	 * The computation of a single cell, restricted to the spans within reach.
+	 */
+	private final Wavefront.SpanAction fillSpanWithinReach = (min, max) -> {
+		if (max <= reach[min]) {
+			fillSpan(min, max);
+		}
+	};
+
+	/**
+	 * The computation of a single cell.
+	 */
+	private final Wavefront.SpanAction fillSpan = this::fillSpan;
+
+	/**
+	 * Construct a new tabulation for the specified grammar.
+	 *
+	 * @param grammar the grammar
+	 */
+	protected Tabulation(Grammar grammar) {
+		this.grammar = grammar;
+	}
+
+	/**
+	 * Returns the grammar of this tabulation.
+	 *
+	 * @return the grammar of this tabulation
+	 */
+	public Grammar getGrammar() {
+		return grammar;
+	}
+
+	/**
+	 * Restricts subsequent tabulations to graphs whose edges are admitted by
+	 * the specified filter.
+	 *
+	 * @param filter the filter, or {@code null} to admit all edges
+	 * @throws IllegalArgumentException if the grammar of this tabulation is
+	 * not prunable
+	 */
+	public void setFilter(GraphFilter filter) {
+		if (filter != null && !grammar.isPrunable()) {
+			throw new IllegalArgumentException("The grammar of this tabulation is not prunable");
+		}
+		this.filter = filter;
+	}
+
+	/**
+	 * Returns the filter for the edges.
+	 *
+	 * @return the filter for the edges, or {@code null} if all edges are
+	 * admissible
+	 */
+	public GraphFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * Restricts subsequent tabulations to graphs whose edges have at most the
+	 * specified length. The length of an edge is the absolute difference
+	 * between its source and its target.
+	 *
+	 * @param maxArcLength the maximal length of an edge, or
+	 * {@link Integer#MAX_VALUE} to admit edges of any length
+	 * @throws IllegalArgumentException if the specified length is not
+	 * positive, or if it is bounded and the grammar of this tabulation is not
+	 * prunable
+	 */
+	public void setMaxArcLength(int maxArcLength) {
+		if (maxArcLength < 1) {
+			throw new IllegalArgumentException("Illegal maximal arc length: " + maxArcLength);
+		}
+		if (maxArcLength < Integer.MAX_VALUE && !grammar.isPrunable()) {
+			throw new IllegalArgumentException("The grammar of this tabulation is not prunable");
+		}
+		this.maxArcLength = maxArcLength;
+	}
+
+	/**
+	 * Returns the maximal length of an admissible edge.
+	 *
+	 * @return the maximal length of an admissible edge, or
+	 * {@link Integer#MAX_VALUE} if edges of any length are admissible
+	 */
+	public int getMaxArcLength() {
+		return maxArcLength;
+	}
+
+	/**
+	 * Computes the values of all items for the specified number of nodes,
+	 * using the serial schedule.
+	 *
+	 * @param nNodes the number of nodes
+	 */
+	public void fill(int nNodes) {
+		fill(nNodes, Wavefront.SERIAL);
+	}
+
+	/**
+	 * Computes the values of all items for the specified number of nodes,
+	 * using the specified schedule.
+	 *
+	 * @param nNodes the number of nodes
+	 * @param wavefront the schedule for the computation of the chart cells
+	 */
+	public void fill(int nNodes, Wavefront wavefront) {
+		this.nNodes = nNodes;
+		computeSplitPoints();
+		prepare(nNodes);
+		for (int node = 0; node < nNodes; node++) {
+			fillSpan(node, node);
+		}
+		wavefront.run(nNodes, isRestricted ? fillSpanWithinReach : fillSpan);
+	}
+
+	/**
+	 * Computes the reach and the split points. The arrays are reused between
+	 * tabulations and only grow.
+	 */
+	private void computeSplitPoints() {
+		if (reach == null || reach.length < nNodes) {
+			reach = new int[nNodes];
+			leftReach = new int[nNodes];
+			splitPointOffsets = new int[nNodes + 1];
+		}
+		isRestricted = filter != null || maxArcLength < nNodes - 1;
+		if (!isRestricted) {
+			Arrays.fill(reach, 0, nNodes, nNodes - 1);
+			for (int max = 0; max < nNodes; max++) {
+				leftReach[max] = Math.min(1, max);
+			}
+		} else {
+			assert filter == null || filter.getNNodes() >= nNodes;
+			Arrays.fill(reach, 0, nNodes, 0);
+			int n = 0;
+			for (int max = 0; max < nNodes; max++) {
+				splitPointOffsets[max] = n;
+				for (int mid = Math.max(0, max - maxArcLength); mid < max; mid++) {
+					if (filter == null || filter.isConnected(mid, max)) {
+						if (n == splitPoints.length) {
+							splitPoints = Arrays.copyOf(splitPoints, Math.max(2 * n, nNodes));
+						}
+						splitPoints[n++] = mid;
+						reach[mid] = max;
+					}
+				}
+				leftReach[max] = n > splitPointOffsets[max] ? splitPoints[splitPointOffsets[max]] : max;
+			}
+			splitPointOffsets[nNodes] = n;
+			for (int min = 0; min < nNodes; min++) {
+				reach[min] = Math.max(reach[min], min);
+			}
+			if (nNodes > 0) {
+				reach[0] = nNodes - 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns, for each left endpoint, the largest right endpoint of a span
+	 * that needs to be computed. The array may be longer than the number of
+	 * nodes; the remaining entries are unspecified.
+	 *
+	 * @return the largest right endpoint of a span that needs to be computed,
+	 * indexed by left endpoint
+	 */
+	protected final int[] getReach() {
+		return reach;
+	}
+
+	/**
+	 * Returns, for each right endpoint, the smallest left endpoint of a span
+	 * that can be the right antecedent of a binary rule. The array may be
+	 * longer than the number of nodes; the remaining entries are unspecified.
+	 *
+	 * @return the smallest left endpoint of a span that can be the right
+	 * antecedent of a binary rule, indexed by right endpoint
+	 */
+	protected final int[] getLeftReach() {
+		return leftReach;
+	}
+
+	/**
+	 * Returns the candidate split points, or {@code null} if all edges are
+	 * admissible. In the latter case, the split points for the span
+	 * {@code (min, max)} are all nodes between {@code min} and {@code max}
+	 * (exclusive); otherwise, they are the elements of the returned array from
+	 * position {@link #getFirstSplitPoint(int, int)} up to but excluding
+	 * position {@link #getEndSplitPoint(int)}, in increasing order.
+	 *
+	 * @return the candidate split points, or {@code null}
+	 */
+	protected final int[] getSplitPoints() {
+		return isRestricted ? splitPoints : null;
+	}
+
+	/**
+	 * Returns the position of the first split point for the specified span
+	 * in the array returned by {@link #getSplitPoints()}.
+	 *
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 * @return the position of the first split point for the specified span
+	 */
+	protected final int getFirstSplitPoint(int min, int max) {
+		int i = Arrays.binarySearch(splitPoints, splitPointOffsets[max], splitPointOffsets[max + 1], min + 1);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/**
+	 * Returns the position after the last split point for spans with the
+	 * specified right endpoint in the array returned by
+	 * {@link #getSplitPoints()}.
+	 *
+	 * @param max the right endpoint of the span
+	 * @return the position after the last split point for spans with the
+	 * specified right endpoint
+	 */
+	protected final int getEndSplitPoint(int max) {
+		return splitPointOffsets[max + 1];
+	}
+
+	/**
+	 * Tests whether the specified edge is admissible.
+	 *
+	 * @param src the source of the edge
+	 * @param tgt the target of the edge
+	 * @return {@code true} if the specified edge is admissible
+	 */
+	protected final boolean isAdmissible(int src, int tgt) {
+		return Math.abs(tgt - src) <= maxArcLength && (filter == null || filter.isAdmissible(src, tgt));
+	}
+
+	/**
+	 * Prepares the charts for the specified number of nodes.
+	 *
+	 * @param nNodes the number of nodes
+	 */
+	protected abstract void prepare(int nNodes);
+
+	/**
+	 * Computes the values of all items on the specified span.
+	 *
+	 * @param min the left endpoint of the span
+	 * @param max the right endpoint of the span
+	 */
+	protected abstract void fillSpan(int min, int max);
+}
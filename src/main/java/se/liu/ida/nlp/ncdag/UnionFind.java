@@ -0,0 +1,180 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.Arrays;
+
+/**
+ * A partition of the nodes of a graph into disjoint sets, with union by rank
+ * and path compression. Sets can be merged incrementally, for example as
+ * edges are added to a graph, and any sequence of operations takes
+ * near-linear time.
+ *
+ * <p>
+ * A partition can be reused with {@link #reset(int)}. Its arrays grow to the
+ * largest number of nodes seen so far.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class UnionFind {
+
+	/**
+	 * The parent of each node; the representative of a set is its own
+	 * parent.
+	 */
+	private int[] parent;
+
+	/**
+	 * An upper bound on the height of the tree of each representative.
+	 */
+	private byte[] rank;
+
+	/**
+	 * The size of the set of each representative.
+	 */
+	private int[] size;
+
+	/**
+	 * The number of nodes.
+	 */
+	private int nNodes;
+
+	/**
+	 * The number of sets.
+	 */
+	private int nSets;
+
+	/**
+	 * Construct a partition of the specified number of nodes into singleton
+	 * sets.
+	 *
+	 * @param nNodes the number of nodes
+	 */
+	public UnionFind(int nNodes) {
+		this.parent = new int[nNodes];
+		this.rank = new byte[nNodes];
+		this.size = new int[nNodes];
+		reset(nNodes);
+	}
+
+	/**
+	 * Construct the partition of the nodes of the specified graph into its
+	 * weakly connected components.
+	 *
+	 * @param graph a graph
+	 */
+	public UnionFind(CompactGraph graph) {
+		this(graph.getNNodes());
+		for (int edge = 0; edge < graph.getNEdges(); edge++) {
+			union(graph.getSource(edge), graph.getTarget(edge));
+		}
+	}
+
+	/**
+	 * Resets this partition to the specified number of nodes in singleton
+	 * sets.
+	 *
+	 * @param nNodes the number of nodes
+	 */
+	public void reset(int nNodes) {
+		if (parent.length < nNodes) {
+			parent = new int[nNodes];
+			rank = new byte[nNodes];
+			size = new int[nNodes];
+		}
+		for (int node = 0; node < nNodes; node++) {
+			parent[node] = node;
+		}
+		Arrays.fill(rank, 0, nNodes, (byte) 0);
+		Arrays.fill(size, 0, nNodes, 1);
+		this.nNodes = nNodes;
+		this.nSets = nNodes;
+	}
+
+	/**
+	 * Returns the number of nodes of this partition.
+	 *
+	 * @return the number of nodes of this partition
+	 */
+	public int getNNodes() {
+		return nNodes;
+	}
+
+	/**
+	 * Returns the representative of the set that contains the specified node.
+	 *
+	 * @param node a node
+	 * @return the representative of the set that contains the specified node
+	 */
+	public int find(int node) {
+		assert 0 <= node && node < nNodes;
+		int root = node;
+		while (parent[root] != root) {
+			root = parent[root];
+		}
+		// Compress the path.
+		while (parent[node] != root) {
+			int next = parent[node];
+			parent[node] = root;
+			node = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Merges the sets that contain the specified nodes.
+	 *
+	 * @param node1 the first node
+	 * @param node2 the second node
+	 * @return {@code true} if the nodes were in different sets
+	 */
+	public boolean union(int node1, int node2) {
+		int root1 = find(node1);
+		int root2 = find(node2);
+		if (root1 == root2) {
+			return false;
+		}
+		if (rank[root1] < rank[root2]) {
+			int root = root1;
+			root1 = root2;
+			root2 = root;
+		} else if (rank[root1] == rank[root2]) {
+			rank[root1]++;
+		}
+		parent[root2] = root1;
+		size[root1] += size[root2];
+		nSets--;
+		return true;
+	}
+
+	/**
+	 * Tests whether the specified nodes are in the same set.
+	 *
+	 * @param node1 the first node
+	 * @param node2 the second node
+	 * @return {@code true} if the specified nodes are in the same set
+	 */
+	public boolean isConnected(int node1, int node2) {
+		return find(node1) == find(node2);
+	}
+
+	/**
+	 * Returns the number of sets of this partition.
+	 *
+	 * @return the number of sets of this partition
+	 */
+	public int getNSets() {
+		return nSets;
+	}
+
+	/**
+	 * Returns the size of the set that contains the specified node.
+	 *
+	 * @param node a node
+	 * @return the size of the set that contains the specified node
+	 */
+	public int getSize(int node) {
+		return size[find(node)];
+	}
+}
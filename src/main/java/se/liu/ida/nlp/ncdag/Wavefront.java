@@ -0,0 +1,157 @@
+/*
+ * See the file "LICENSE" for the full license governing this code.
+ */
+package se.liu.ida.nlp.ncdag;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Schedules the computation of the cells of a chart.
+ *
+ * <p>
+ * The value of a cell {@code (min, max)} depends only on the values of cells
+ * for shorter spans. All cells on the same anti-diagonal, that is, with the
+ * same span length, can therefore be computed independently. A parallel
+ * schedule processes one anti-diagonal after the other, splitting each of
+ * them into fork-join tasks. Anti-diagonals with little work are processed
+ * on the calling thread. Since every cell is computed by the same sequence of
+ * operations as in the serial schedule, the results are identical.
+ *
+ * @author Marco Kuhlmann <marco.kuhlmann@liu.se>
+ */
+public class Wavefront {
+
+	/**
+	 * The serial schedule. This visits the spans in increasing order of their
+	 * right endpoints, and spans with the same right endpoint in decreasing
+	 * order of their left endpoints.
+	 */
+	public static final Wavefront SERIAL = new Wavefront(null, Integer.MAX_VALUE);
+
+	/**
+	 * The default minimal amount of work of a fork-join task, measured in the
+	 * number of split points.
+	 */
+	public static final int DEFAULT_GRAIN = 1 << 12;
+
+	/**
+	 * The pool used to execute the tasks, or {@code null} for the serial
+	 * schedule.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The minimal amount of work of a fork-join task.
+	 */
+	private final int grain;
+
+	/**
+	 * Construct a parallel schedule that executes its tasks in the specified
+	 * pool.
+	 *
+	 * @param pool the pool used to execute the tasks
+	 * @param grain the minimal amount of work of a task, measured in the
+	 * number of split points
+	 */
+	public Wavefront(ForkJoinPool pool, int grain) {
+		this.pool = pool;
+		this.grain = grain;
+	}
+
+	/**
+	 * Construct a parallel schedule that executes its tasks in the specified
+	 * pool, using the default grain.
+	 *
+	 * @param pool the pool used to execute the tasks
+	 */
+	public Wavefront(ForkJoinPool pool) {
+		this(pool, DEFAULT_GRAIN);
+	}
+
+	/**
+	 * Returns a parallel schedule that executes its tasks in the common pool.
+	 *
+	 * @return a parallel schedule that executes its tasks in the common pool
+	 */
+	public static Wavefront parallel() {
+		return new Wavefront(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the cells for all spans {@code (min, max)} with
+	 * {@code 0 <= min < max < nNodes}.
+	 *
+	 * @param nNodes the number of nodes
+	 * @param action the computation for a single cell
+	 */
+	public void run(int nNodes, SpanAction action) {
+		if (pool == null) {
+			for (int max = 0; max < nNodes; max++) {
+				for (int min = max - 1; min >= 0; min--) {
+					action.fill(min, max);
+				}
+			}
+		} else {
+			for (int length = 1; length < nNodes; length++) {
+				int nSpans = nNodes - length;
+				if ((long) nSpans * length <= grain) {
+					for (int min = 0; min < nSpans; min++) {
+						action.fill(min, min + length);
+					}
+				} else {
+					pool.invoke(new Diagonal(action, length, 0, nSpans));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The computation for a single cell of a chart.
+	 */
+	public interface SpanAction {
+
+		/**
+		 * Computes the cell for the specified span.
+		 *
+		 * @param min the left endpoint of the span
+		 * @param max the right endpoint of the span
+		 */
+		public void fill(int min, int max);
+	}
+
+	/**
+	 * A task that computes a range of cells on an anti-diagonal.
+	 */
+	private final class Diagonal extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SpanAction action;
+
+		private final int length;
+
+		private final int fromMin;
+
+		private final int toMin;
+
+		Diagonal(SpanAction action, int length, int fromMin, int toMin) {
+			this.action = action;
+			this.length = length;
+			this.fromMin = fromMin;
+			this.toMin = toMin;
+		}
+
+		@Override
+		protected void compute() {
+			if (toMin - fromMin == 1 || (long) (toMin - fromMin) * length <= grain) {
+				for (int min = fromMin; min < toMin; min++) {
+					action.fill(min, min + length);
+				}
+			} else {
+				int midMin = (fromMin + toMin) >>> 1;
+				invokeAll(new Diagonal(action, length, fromMin, midMin), new Diagonal(action, length, midMin, toMin));
+			}
+		}
+	}
+}